@@ -0,0 +1,178 @@
+package com.luminesim.health;
+
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Keeps a running count of outstanding {@link Need}s by need name and {@link GeographicArea}.
+ * Fed by add-need and resolve-need events so that reporting never has to scan every {@link Person}.
+ *
+ * @apiNote
+ *  Safe to feed from many threads at once. Counters are per (area, need) pair and lock-free, so concurrent updates
+ *  do not contend on a single lock.
+ * @implNote
+ *  Reads are a single counter read, so their cost is independent of the number of people being tracked.
+ *  Reads made while updates are in flight are not guaranteed to reflect a single point in time.
+ *  Area counters are only decremented while positive, so outstanding counts never go negative.
+ */
+public class NeedDemandAggregator {
+
+    /**
+     * Outstanding needs, by area and then by need name.
+     */
+    private final Map<GeographicArea, Map<String, AtomicLong>> byArea = new ConcurrentHashMap<>();
+
+    /**
+     * Outstanding needs across all areas, by need name.
+     */
+    private final Map<String, LongAdder> byNeed = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a person in the given area has acquired a need.
+     *
+     * @param area
+     * @param need
+     */
+    public void needAdded(@NonNull GeographicArea area, @NonNull Need need) {
+        counter(area, need.getName()).incrementAndGet();
+        counter(byNeed, need.getName()).increment();
+    }
+
+    /**
+     * Records that a person in the given area has had a need resolved.
+     *
+     * @param area
+     * @param need
+     * @pre the area has an outstanding need with the same name, e.g. added via {@link #needAdded(GeographicArea, Need)}
+     */
+    public void needResolved(@NonNull GeographicArea area, @NonNull Need need) {
+        precondition(
+                () -> "No outstanding " + need.getName() + " need to resolve in " + area,
+                decrementIfPositive(counter(area, need.getName())));
+        counter(byNeed, need.getName()).decrement();
+    }
+
+    /**
+     * Records that a person has moved between areas while holding a need.
+     *
+     * @param from
+     * @param to
+     * @param need
+     * @pre the source area has an outstanding need with the same name
+     */
+    public void needMoved(@NonNull GeographicArea from, @NonNull GeographicArea to, @NonNull Need need) {
+        precondition(
+                () -> "No outstanding " + need.getName() + " need to move out of " + from,
+                decrementIfPositive(counter(from, need.getName())));
+        counter(to, need.getName()).incrementAndGet();
+    }
+
+    /**
+     * @return
+     *  The number of outstanding needs with the given name in the area.
+     */
+    public long getOutstanding(@NonNull GeographicArea area, @NonNull String needName) {
+        Map<String, AtomicLong> needs = byArea.get(area);
+        if (needs == null) {
+            return 0;
+        }
+        AtomicLong count = needs.get(needName);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return
+     *  The number of outstanding needs with the given name across all areas.
+     */
+    public long getOutstanding(@NonNull String needName) {
+        LongAdder count = byNeed.get(needName);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return
+     *  An immutable copy of the outstanding needs, by area and then by need name.
+     * @implNote
+     *  Cost is proportional to the number of (area, need) pairs seen, not the number of people.
+     */
+    public Map<GeographicArea, Map<String, Long>> snapshot() {
+        Map<GeographicArea, Map<String, Long>> result = new HashMap<>();
+        byArea.forEach((area, needs) -> {
+            Map<String, Long> counts = new HashMap<>();
+            needs.forEach((name, count) -> counts.put(name, count.get()));
+            result.put(area, Collections.unmodifiableMap(counts));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return
+     *  An immutable copy of the outstanding needs across all areas, by need name.
+     */
+    public Map<String, Long> snapshotByNeed() {
+        Map<String, Long> result = new HashMap<>();
+        byNeed.forEach((name, count) -> result.put(name, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Sets all counts to zero.
+     *
+     * @apiNote
+     *  Updates made while clearing may or may not be counted, so clear once updates have stopped (e.g. between
+     *  simulation runs). Counters are zeroed in place rather than dropped, so an update is never lost to a counter
+     *  that is no longer reachable.
+     */
+    public void clear() {
+        byArea.values().forEach(needs -> needs.values().forEach(count -> count.set(0)));
+        byNeed.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * @return
+     *  True, if the count was positive and has been decremented.
+     */
+    private static boolean decrementIfPositive(AtomicLong count) {
+        long current = count.get();
+        while (current > 0) {
+            if (count.compareAndSet(current, current - 1)) {
+                return true;
+            }
+            current = count.get();
+        }
+        return false;
+    }
+
+    private AtomicLong counter(@NonNull GeographicArea area, @NonNull String needName) {
+        Map<String, AtomicLong> needs = byArea.get(area);
+        if (needs == null) {
+            needs = byArea.computeIfAbsent(area, x -> new ConcurrentHashMap<>());
+        }
+        AtomicLong count = needs.get(needName);
+        if (count == null) {
+            count = needs.computeIfAbsent(needName, x -> new AtomicLong());
+        }
+        return count;
+    }
+
+    /**
+     * @implNote
+     *  Checks for an existing counter before falling back to computeIfAbsent, which locks its bin on Java 8
+     *  even when the key is present.
+     */
+    private static LongAdder counter(@NonNull Map<String, LongAdder> counters, @NonNull String needName) {
+        LongAdder count = counters.get(needName);
+        if (count == null) {
+            count = counters.computeIfAbsent(needName, x -> new LongAdder());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,74 @@
+package com.luminesim.health;
+
+import com.luminesim.qa.InvalidPreconditionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link NeedDemandAggregator}
+ */
+public class NeedDemandAggregatorTest {
+
+    private static final GeographicArea north = () -> new double[]{0, 0};
+    private static final GeographicArea south = () -> new double[]{1, 1};
+    private static final Need flu = () -> "Flu";
+    private static final Need fracture = () -> "Fracture";
+
+    /**
+     * Adding, resolving and moving needs should be reflected in the counts and snapshots.
+     */
+    @Test
+    public void updates_shouldBeCounted() {
+        NeedDemandAggregator aggregator = new NeedDemandAggregator();
+        aggregator.needAdded(north, flu);
+        aggregator.needAdded(north, flu);
+        aggregator.needAdded(south, fracture);
+        aggregator.needResolved(north, flu);
+        aggregator.needMoved(south, north, fracture);
+
+        assertEquals(1, aggregator.getOutstanding(north, "Flu"), "Wrong count after resolving.");
+        assertEquals(1, aggregator.getOutstanding(north, "Fracture"), "Moved needs must arrive.");
+        assertEquals(0, aggregator.getOutstanding(south, "Fracture"), "Moved needs must leave.");
+        assertEquals(0, aggregator.getOutstanding(south, "Flu"), "Unseen needs have no count.");
+        assertEquals(1, aggregator.getOutstanding("Fracture"), "Moving must not change the total.");
+        assertEquals(Long.valueOf(1), aggregator.snapshot().get(north).get("Flu"), "Snapshots must match counts.");
+        assertEquals(Long.valueOf(1), aggregator.snapshotByNeed().get("Flu"), "Snapshots must match counts.");
+
+        aggregator.clear();
+        assertEquals(0, aggregator.getOutstanding(north, "Flu"), "Clearing must zero counts.");
+        assertEquals(0, aggregator.getOutstanding("Flu"), "Clearing must zero counts.");
+    }
+
+    /**
+     * Resolving or moving a need that is not outstanding should be rejected rather than go negative.
+     */
+    @Test
+    public void updates_shouldRejectMissingNeeds() {
+        NeedDemandAggregator aggregator = new NeedDemandAggregator();
+        assertThrows(InvalidPreconditionException.class, () -> aggregator.needResolved(north, flu), "Nothing to resolve.");
+        assertThrows(InvalidPreconditionException.class, () -> aggregator.needMoved(north, south, flu), "Nothing to move.");
+        assertEquals(0, aggregator.getOutstanding(north, "Flu"), "Counts must not go negative.");
+        assertEquals(0, aggregator.getOutstanding(south, "Flu"), "Rejected moves must not arrive.");
+        assertEquals(0, aggregator.getOutstanding("Flu"), "Counts must not go negative.");
+    }
+
+    /**
+     * Updates from many threads at once should all be counted.
+     */
+    @Test
+    public void updates_shouldBeCountedConcurrently() {
+        NeedDemandAggregator aggregator = new NeedDemandAggregator();
+        IntStream.range(0, 100_000).parallel().forEach(i -> {
+            aggregator.needAdded(i % 2 == 0 ? north : south, flu);
+            if (i % 4 == 0) {
+                aggregator.needMoved(north, south, flu);
+            }
+        });
+        assertEquals(100_000, aggregator.getOutstanding("Flu"), "Every concurrent addition must be counted.");
+        assertEquals(25_000, aggregator.getOutstanding(north, "Flu"), "Every concurrent move must be counted.");
+        assertEquals(75_000, aggregator.getOutstanding(south, "Flu"), "Every concurrent move must be counted.");
+    }
+}
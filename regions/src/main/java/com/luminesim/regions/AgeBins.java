@@ -0,0 +1,564 @@
+package com.luminesim.regions;
+
+import java.util.Arrays;
+
+import static java.lang.Integer.max;
+import static java.lang.Integer.min;
+
+/**
+ * The age bins of a single population segment, kept sorted by age alongside running totals of their counts.
+ * Each bin covers [start, end).
+ *
+ * @implNote
+ *  Bins are ordered by start age, then end age. When no two bins overlap (the usual case), the bins entirely
+ *  inside a query range are contiguous and are summed from the running totals, so a query is O(log bins).
+ *  Overlapping bins are still supported, but fall back to a linear scan.
+ *  All bookkeeping happens in {@link #put(int, int, int)}, so reads never modify the instance.
+ */
+final class AgeBins {
+
+    /**
+     * The number of bins in use.
+     */
+    private int size;
+
+    /**
+     * The start age (inclusive) of each bin.
+     */
+    private int[] starts;
+
+    /**
+     * The end age (exclusive) of each bin.
+     */
+    private int[] ends;
+
+    /**
+     * The number of people in each bin.
+     */
+    private int[] counts;
+
+    /**
+     * Running totals: prefix[i] is the number of people in bins [0, i).
+     */
+    private long[] prefix;
+
+    /**
+     * True if no two bins overlap.
+     */
+    private boolean disjoint = true;
+
+    AgeBins() {
+        this(4);
+    }
+
+    AgeBins(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        counts = new int[capacity];
+        prefix = new long[capacity + 1];
+    }
+
+    /**
+     * @return
+     *  Empty, adjacent bins [edges[0], edges[1]), [edges[1], edges[2]), ...
+     * @pre edges are strictly increasing
+     */
+    static AgeBins bands(int[] edges) {
+        int n = edges.length - 1;
+        AgeBins result = new AgeBins(n);
+        System.arraycopy(edges, 0, result.starts, 0, n);
+        System.arraycopy(edges, 1, result.ends, 0, n);
+        result.size = n;
+        return result;
+    }
+
+    /**
+     * Sets the number of people in the bin [start, end), replacing any existing count for exactly that bin.
+     *
+     * @return
+     *  The count previously held by exactly that bin, or zero if it is new.
+     */
+    int put(int start, int end, int count) {
+        int previous = 0;
+        int index = indexOf(start, end);
+        if (index >= 0) {
+            previous = counts[index];
+            counts[index] = count;
+        }
+        else {
+            index = -(index + 1);
+            if (size == starts.length) {
+                int capacity = max(4, size * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                prefix = Arrays.copyOf(prefix, capacity + 1);
+            }
+            System.arraycopy(starts, index, starts, index + 1, size - index);
+            System.arraycopy(ends, index, ends, index + 1, size - index);
+            System.arraycopy(counts, index, counts, index + 1, size - index);
+            starts[index] = start;
+            ends[index] = end;
+            counts[index] = count;
+            size += 1;
+            disjoint = computeDisjoint();
+        }
+        for (int i = index; i < size; i += 1) {
+            prefix[i + 1] = prefix[i] + counts[i];
+        }
+        return previous;
+    }
+
+    /**
+     * @return
+     *  The number of bins.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     *  The number of people across all bins.
+     */
+    long total() {
+        return prefix[size];
+    }
+
+    int getStart(int index) {
+        return starts[index];
+    }
+
+    int getEnd(int index) {
+        return ends[index];
+    }
+
+    int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return
+     *  The number of people in [startAgeInclusive, endAgeExclusive), assuming people are spread evenly within
+     *  each bin. Not rounded.
+     */
+    double count(int startAgeInclusive, int endAgeExclusive) {
+        if (!disjoint) {
+            double total = 0;
+            for (int i = 0; i < size; i += 1) {
+                total += contribution(i, startAgeInclusive, endAgeExclusive);
+            }
+            return total;
+        }
+
+        // Bins [lo, hi) lie entirely within the range. Only bins lo - 1 and hi can partially overlap it.
+        int lo = firstStartAtLeast(startAgeInclusive);
+        int hi = firstEndAbove(endAgeExclusive);
+        double total = 0;
+        if (lo < hi) {
+            total += prefix[hi] - prefix[lo];
+        }
+        if (lo > 0) {
+            total += contribution(lo - 1, startAgeInclusive, endAgeExclusive);
+        }
+        if (hi < size && hi != lo - 1) {
+            total += contribution(hi, startAgeInclusive, endAgeExclusive);
+        }
+        return total;
+    }
+
+    /**
+     * @return
+     *  For each of the query's bins, the number of people in this instance within that bin's age range.
+     *  Not rounded. Equivalent to calling {@link #count(int, int)} for each of the query's bins.
+     * @implNote
+     *  When neither instance has overlapping bins, both are walked once in a single merge sweep.
+     */
+    double[] countsOver(AgeBins query) {
+        double[] totals = new double[query.size];
+        if (!disjoint || !query.disjoint) {
+            for (int k = 0; k < query.size; k += 1) {
+                totals[k] = count(query.starts[k], query.ends[k]);
+            }
+            return totals;
+        }
+
+        // Both are sorted by start with non-decreasing ends, so bins passed over never matter to later queries.
+        int j = 0;
+        for (int k = 0; k < query.size; k += 1) {
+            int a = query.starts[k];
+            int b = query.ends[k];
+            while (j < size && (ends[j] < a || (ends[j] == a && starts[j] < a))) {
+                j += 1;
+            }
+
+            // Add up in the same order as count(a, b) so the result matches it exactly: whole bins, then the
+            // partial bin below a, then the partial bin above b.
+            long whole = 0;
+            double below = 0;
+            double above = 0;
+            for (int m = j; m < size && (starts[m] < b || (starts[m] == b && ends[m] == b)); m += 1) {
+                if (a <= starts[m] && ends[m] <= b) {
+                    whole += counts[m];
+                }
+                else if (starts[m] < a) {
+                    below += contribution(m, a, b);
+                }
+                else {
+                    above += contribution(m, a, b);
+                }
+            }
+            double total = whole;
+            total += below;
+            total += above;
+            totals[k] = total;
+        }
+        return totals;
+    }
+
+    /**
+     * @return
+     *  True, if every one of the query's bins shares at least one age with one of this instance's bins.
+     * @implNote
+     *  When neither instance has overlapping bins, both are walked once in a single merge sweep.
+     */
+    boolean intersectsEach(AgeBins query) {
+        if (!disjoint || !query.disjoint) {
+            for (int k = 0; k < query.size; k += 1) {
+                if (!intersects(query.starts[k], query.ends[k])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int j = 0;
+        for (int k = 0; k < query.size; k += 1) {
+            int a = query.starts[k];
+            int b = query.ends[k];
+            while (j < size && ends[j] <= a) {
+                j += 1;
+            }
+            boolean found = false;
+            for (int m = j; m < size && starts[m] < b && !found; m += 1) {
+                found = max(starts[m], a) < min(ends[m], b);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return
+     *  The number of people in each bin, counting people in any other bins overlapping it.
+     *  Rounded down. For disjoint bins this is simply each bin's count.
+     */
+    int[] ownCounts() {
+        if (disjoint) {
+            return Arrays.copyOf(counts, size);
+        }
+        int[] result = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            result[i] = (int) count(starts[i], ends[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return
+     *  A new instance with everyone in both instances. If neither has overlapping (or empty) bins, the result has
+     *  none either: each bin is split evenly by age at the other instance's bin edges, so bins with exactly the
+     *  same range are simply added. Otherwise, every bin of both instances is kept, adding counts of bins with
+     *  exactly the same range.
+     * @implNote
+     *  Split bins are rounded with the largest remainder method, so every original bin keeps its count and the
+     *  count over any range made of either instance's bins is exact.
+     */
+    AgeBins plus(AgeBins other) {
+        if (!disjoint || !other.disjoint || hasEmptyBins() || other.hasEmptyBins()) {
+            return merge(other);
+        }
+
+        // Every age at which a bin of either instance starts or ends.
+        int[] edges = new int[2 * (size + other.size)];
+        int n = 0;
+        for (int i = 0; i < size; i += 1) {
+            edges[n++] = starts[i];
+            edges[n++] = ends[i];
+        }
+        for (int j = 0; j < other.size; j += 1) {
+            edges[n++] = other.starts[j];
+            edges[n++] = other.ends[j];
+        }
+        Arrays.sort(edges, 0, n);
+        int distinct = 0;
+        for (int e = 0; e < n; e += 1) {
+            if (distinct == 0 || edges[distinct - 1] != edges[e]) {
+                edges[distinct++] = edges[e];
+            }
+        }
+
+        // The pieces between consecutive edges that either instance covers.
+        AgeBins pieces = new AgeBins(max(distinct - 1, 0));
+        int i = 0;
+        int j = 0;
+        for (int e = 0; e + 1 < distinct; e += 1) {
+            int start = edges[e];
+            int end = edges[e + 1];
+            while (i < size && ends[i] <= start) {
+                i += 1;
+            }
+            while (j < other.size && other.ends[j] <= start) {
+                j += 1;
+            }
+            if ((i < size && starts[i] < end) || (j < other.size && other.starts[j] < end)) {
+                pieces.starts[pieces.size] = start;
+                pieces.ends[pieces.size] = end;
+                pieces.size += 1;
+            }
+        }
+        int[] combined = new int[pieces.size];
+        splitOnto(pieces, combined);
+        other.splitOnto(pieces, combined);
+        return pieces.withCounts(combined);
+    }
+
+    /**
+     * Adds this instance's counts to the pieces' counts, spreading each bin evenly by age across the pieces inside
+     * it and giving people left over after rounding down to the pieces with the largest remainders.
+     *
+     * @pre bins are disjoint and every bin is exactly covered by consecutive pieces
+     */
+    private void splitOnto(AgeBins pieces, int[] into) {
+        long[] remainders = new long[pieces.size];
+        int p = 0;
+        for (int m = 0; m < size; m += 1) {
+            while (p < pieces.size && pieces.starts[p] < starts[m]) {
+                p += 1;
+            }
+            int first = p;
+            int width = ends[m] - starts[m];
+            int left = counts[m];
+            for (; p < pieces.size && pieces.ends[p] <= ends[m]; p += 1) {
+                long share = (long) counts[m] * (pieces.ends[p] - pieces.starts[p]);
+                into[p] += (int) (share / width);
+                left -= (int) (share / width);
+                remainders[p] = share % width;
+            }
+            for (; left > 0; left -= 1) {
+                int best = first;
+                for (int q = first + 1; q < p; q += 1) {
+                    if (remainders[q] > remainders[best]) {
+                        best = q;
+                    }
+                }
+                into[best] += 1;
+                remainders[best] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return
+     *  True, if any bin covers no ages.
+     */
+    private boolean hasEmptyBins() {
+        for (int i = 0; i < size; i += 1) {
+            if (starts[i] == ends[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return
+     *  A new instance with every bin of both instances. Counts of bins with exactly the same range are added.
+     * @implNote
+     *  A single merge of the two sorted bin lists.
+     */
+    private AgeBins merge(AgeBins other) {
+        AgeBins result = new AgeBins(size + other.size);
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < other.size) {
+            int cmp;
+            if (i == size) {
+                cmp = 1;
+            }
+            else if (j == other.size) {
+                cmp = -1;
+            }
+            else {
+                cmp = starts[i] != other.starts[j]
+                        ? Integer.compare(starts[i], other.starts[j])
+                        : Integer.compare(ends[i], other.ends[j]);
+            }
+            if (cmp <= 0) {
+                result.starts[k] = starts[i];
+                result.ends[k] = ends[i];
+                result.counts[k] = counts[i] + (cmp == 0 ? other.counts[j] : 0);
+                i += 1;
+                j += cmp == 0 ? 1 : 0;
+            }
+            else {
+                result.starts[k] = other.starts[j];
+                result.ends[k] = other.ends[j];
+                result.counts[k] = other.counts[j];
+                j += 1;
+            }
+            result.prefix[k + 1] = result.prefix[k] + result.counts[k];
+            k += 1;
+        }
+        result.size = k;
+        result.disjoint = result.computeDisjoint();
+        return result;
+    }
+
+    /**
+     * @return
+     *  A copy of this instance, using no more memory than its bins need.
+     */
+    AgeBins copy() {
+        return withCounts(counts);
+    }
+
+    /**
+     * @return
+     *  A new instance with the same bins as this one but the given counts.
+     * @pre newCounts.length >= size()
+     */
+    AgeBins withCounts(int[] newCounts) {
+        AgeBins result = new AgeBins(size);
+        System.arraycopy(starts, 0, result.starts, 0, size);
+        System.arraycopy(ends, 0, result.ends, 0, size);
+        System.arraycopy(newCounts, 0, result.counts, 0, size);
+        for (int i = 0; i < size; i += 1) {
+            result.prefix[i + 1] = result.prefix[i] + newCounts[i];
+        }
+        result.size = size;
+        result.disjoint = disjoint;
+        return result;
+    }
+
+    /**
+     * @return
+     *  True, if any bin shares at least one age with [startAgeInclusive, endAgeExclusive).
+     */
+    boolean intersects(int startAgeInclusive, int endAgeExclusive) {
+        if (!disjoint) {
+            for (int i = 0; i < size; i += 1) {
+                if (max(starts[i], startAgeInclusive) < min(ends[i], endAgeExclusive)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = firstEndAbove(startAgeInclusive); i < size && starts[i] < endAgeExclusive; i += 1) {
+            if (max(starts[i], startAgeInclusive) < min(ends[i], endAgeExclusive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return
+     *  The number of people bin i contributes to [startAgeInclusive, endAgeExclusive), pro-rated by overlap.
+     */
+    private double contribution(int i, int startAgeInclusive, int endAgeExclusive) {
+        int start = starts[i];
+        int end = ends[i];
+        if (startAgeInclusive <= start && end <= endAgeExclusive) {
+            return counts[i];
+        }
+        int overlap = min(end, endAgeExclusive) - max(start, startAgeInclusive);
+        if (overlap <= 0) {
+            return 0;
+        }
+        double fraction = (double) overlap / (end - start);
+        return fraction * counts[i];
+    }
+
+    /**
+     * @return
+     *  The index of the bin exactly matching [start, end), or (-(insertion point) - 1) if there is none.
+     */
+    private int indexOf(int start, int end) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = starts[mid] != start ? Integer.compare(starts[mid], start) : Integer.compare(ends[mid], end);
+            if (cmp < 0) {
+                lo = mid + 1;
+            }
+            else if (cmp > 0) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * @return
+     *  The first bin whose start is >= age, or size if none.
+     */
+    private int firstStartAtLeast(int age) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < age) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return
+     *  The first bin whose end is > age, or size if none.
+     * @pre bins are disjoint (so ends are non-decreasing)
+     */
+    private int firstEndAbove(int age) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] <= age) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return
+     *  True, if no two bins overlap.
+     */
+    boolean isDisjoint() {
+        return disjoint;
+    }
+
+    private boolean computeDisjoint() {
+        for (int i = 1; i < size; i += 1) {
+            if (ends[i - 1] > starts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
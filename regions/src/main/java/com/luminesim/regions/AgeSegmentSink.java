@@ -0,0 +1,19 @@
+package com.luminesim.regions;
+
+/**
+ * Receives (segment, age) pairs drawn from a {@link Population}.
+ *
+ * @apiNote
+ *  The age is passed as a primitive so that drawing millions of individuals does not box.
+ * @see Population#sample(int, java.util.SplittableRandom, AgeSegmentSink)
+ */
+@FunctionalInterface
+public interface AgeSegmentSink<SegmentType> {
+    /**
+     * Accepts a single drawn individual.
+     *
+     * @param segment The individual's segment.
+     * @param age The individual's age.
+     */
+    void accept(SegmentType segment, double age);
+}
@@ -0,0 +1,225 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * An inverted index from attribute values to the (dense indices of the) locations that have them.
+ *
+ * @implNote
+ *  Each attribute keeps a sorted array of location indices per distinct value, a bit set of the locations whose
+ *  value reads as true, and, for numeric values, a sorted array of location indices per number in sorted order for
+ *  range queries. Per-value arrays cost memory in proportion to the locations holding the value, so attributes
+ *  that are nearly unique per location stay linear in size; bit sets are only built when a query returns.
+ *  Values arrive already parsed (see
+ *  {@link AttributeValue}), so the index never parses text itself and queries never look at the locations.
+ *  Safe to use from many threads: attributes of different locations may be set concurrently (e.g. from parallel
+ *  loaders), and queries see either all or none of each update. Updates take a write lock; queries share a read
+ *  lock, so they only wait on each other while updates are in flight.
+ */
+final class AttributeIndex {
+
+    /**
+     * The locations with each value, by attribute name and then by value.
+     */
+    private final Map<String, Map<String, Postings>> byValue = new HashMap<>();
+
+    /**
+     * The locations whose value is true, by attribute name.
+     */
+    private final Map<String, BitSet> byTruth = new HashMap<>();
+
+    /**
+     * The locations with each numeric value, by attribute name and then by value.
+     */
+    private final Map<String, TreeMap<Double, Postings>> byNumber = new HashMap<>();
+
+    /**
+     * Guards every map, bit set and posting list above.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Records that an attribute of the location with the given index has changed.
+     *
+     * @param oldValue The previous value, or null if it was not set.
+     * @param newValue The new value, or null if it has been removed.
+     */
+    void update(int index, @NonNull String name, AttributeValue oldValue, AttributeValue newValue) {
+        lock.writeLock().lock();
+        try {
+            apply(index, name, oldValue, newValue);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records all of an entity's current attributes.
+     */
+    void addAll(int index, @NonNull Attributes attributes) {
+        lock.writeLock().lock();
+        try {
+            attributes.forEach((name, value) -> apply(index, name, null, value));
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @pre the write lock is held
+     */
+    private void apply(int index, String name, AttributeValue oldValue, AttributeValue newValue) {
+        if (oldValue != null) {
+            clear(byValue.get(name), oldValue.getText(), index);
+            BitSet truth = byTruth.get(name);
+            if (truth != null) {
+                truth.clear(index);
+                if (truth.isEmpty()) {
+                    byTruth.remove(name);
+                }
+            }
+            if (oldValue.isNumeric()) {
+                clear(byNumber.get(name), oldValue.getNumber(), index);
+            }
+        }
+        if (newValue != null) {
+            byValue.computeIfAbsent(name, x -> new HashMap<>()).computeIfAbsent(newValue.getText(), x -> new Postings()).add(index);
+            if (newValue.isTruth()) {
+                byTruth.computeIfAbsent(name, x -> new BitSet()).set(index);
+            }
+            if (newValue.isNumeric()) {
+                byNumber.computeIfAbsent(name, x -> new TreeMap<>()).computeIfAbsent(newValue.getNumber(), x -> new Postings()).add(index);
+            }
+        }
+    }
+
+    /**
+     * @return
+     *  The locations whose attribute has exactly the given value. A new bit set.
+     */
+    BitSet withValue(@NonNull String name, @NonNull String value) {
+        return read(() -> {
+            BitSet result = new BitSet();
+            Map<String, Postings> values = byValue.get(name);
+            Postings postings = values == null ? null : values.get(value);
+            if (postings != null) {
+                postings.addTo(result);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return
+     *  The locations whose attribute reads as true according to {@link AttributeValue#isTruth()}. A new bit set.
+     */
+    BitSet whereTrue(@NonNull String name) {
+        return read(() -> {
+            BitSet result = byTruth.get(name);
+            return result == null ? new BitSet() : (BitSet) result.clone();
+        });
+    }
+
+    /**
+     * @return
+     *  The locations whose attribute is a number in [minInclusive, maxInclusive]. A new bit set.
+     * @implNote
+     *  Proportional to the number of distinct values and matching locations in the range, not the number of
+     *  locations.
+     */
+    BitSet between(@NonNull String name, double minInclusive, double maxInclusive) {
+        return read(() -> {
+            BitSet result = new BitSet();
+            TreeMap<Double, Postings> numbers = byNumber.get(name);
+            if (numbers != null && minInclusive <= maxInclusive) {
+                NavigableMap<Double, Postings> range = numbers.subMap(minInclusive, true, maxInclusive, true);
+                range.values().forEach(postings -> postings.addTo(result));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return
+     *  The query's result, computed under the read lock.
+     */
+    private BitSet read(Supplier<BitSet> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <K> void clear(Map<K, Postings> lists, K key, int index) {
+        if (lists != null) {
+            Postings postings = lists.get(key);
+            if (postings != null) {
+                postings.remove(index);
+                if (postings.isEmpty()) {
+                    lists.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * The indices of the locations with one value, in increasing order.
+     *
+     * @implNote
+     *  Locations are usually added in index order, so adding is normally an append.
+     */
+    private static final class Postings {
+
+        private int[] indices = new int[1];
+        private int size = 0;
+
+        void add(int index) {
+            int at = size == 0 || indices[size - 1] < index ? size : Arrays.binarySearch(indices, 0, size, index);
+            if (at < 0) {
+                at = -(at + 1);
+            }
+            else if (at < size) {
+                return;
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            System.arraycopy(indices, at, indices, at + 1, size - at);
+            indices[at] = index;
+            size += 1;
+        }
+
+        void remove(int index) {
+            int at = Arrays.binarySearch(indices, 0, size, index);
+            if (at >= 0) {
+                System.arraycopy(indices, at + 1, indices, at, size - at - 1);
+                size -= 1;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void addTo(BitSet result) {
+            for (int k = 0; k < size; k += 1) {
+                result.set(indices[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.luminesim.regions;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An attribute name, interned once for the whole JVM, e.g. {@code AttributeKey.of("IsHighSchool")}.
+ *
+ * @apiNote
+ *  Reading attributes through a key held in a constant skips looking the name up on every read.
+ *  Safe to use from many threads.
+ * @see HasAttributes
+ */
+@Getter
+public final class AttributeKey {
+
+    /**
+     * Every key, by name.
+     */
+    private static final Map<String, AttributeKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Every key, by id.
+     * @implNote
+     *  Replaced (never modified) when a key is added, so readers never need to lock.
+     */
+    private static volatile AttributeKey[] byId = new AttributeKey[0];
+
+    /**
+     * The attribute's name.
+     */
+    private final String name;
+
+    /**
+     * A dense index for the key, assigned in order of first use.
+     */
+    private final int id;
+
+    private AttributeKey(@NonNull String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * @return
+     *  The key with the given name, creating it if it does not exist yet.
+     */
+    public static AttributeKey of(@NonNull String name) {
+        AttributeKey key = keys.get(name);
+        if (key != null) {
+            return key;
+        }
+        synchronized (keys) {
+            key = keys.get(name);
+            if (key == null) {
+                key = new AttributeKey(name, byId.length);
+                AttributeKey[] grown = Arrays.copyOf(byId, key.id + 1);
+                grown[key.id] = key;
+                // Publish the key by id before by name so that anyone who sees it can look it up by id.
+                byId = grown;
+                keys.put(name, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * @return
+     *  The key with the given id.
+     * @pre the key exists
+     */
+    static AttributeKey byId(int id) {
+        return byId[id];
+    }
+
+    /**
+     * @return
+     *  The key with the given name, or null if no attribute with that name has ever been used.
+     */
+    static AttributeKey find(@NonNull String name) {
+        return keys.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,16 @@
+package com.luminesim.regions;
+
+/**
+ * Told whenever an attribute of something with attributes changes.
+ *
+ * @see HasAttributes
+ */
+@FunctionalInterface
+interface AttributeListener {
+    /**
+     * @param name The attribute's name.
+     * @param oldValue The attribute's previous value, or null if it was not set.
+     * @param newValue The attribute's new value, or null if it has been removed.
+     */
+    void attributeChanged(String name, AttributeValue oldValue, AttributeValue newValue);
+}
@@ -0,0 +1,52 @@
+package com.luminesim.regions;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An attribute's text together with its parsed forms.
+ *
+ * @implNote
+ *  {@link #parse(String)} is the only place attribute text is parsed, so {@link Attributes} and
+ *  {@link AttributeIndex} always agree on what is a number and what is true.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+final class AttributeValue {
+
+    /**
+     * The attribute's text.
+     */
+    private final String text;
+
+    /**
+     * True if the text is a number according to {@link Double#parseDouble(String)}.
+     */
+    private final boolean numeric;
+
+    /**
+     * The text as a number, or 0 if it is not one.
+     */
+    private final double number;
+
+    /**
+     * The text as a boolean, according to {@link Boolean#valueOf(String)}.
+     */
+    private final boolean truth;
+
+    /**
+     * @return
+     *  The text with its parsed forms.
+     */
+    static AttributeValue parse(@NonNull String text) {
+        boolean truth = Boolean.valueOf(text);
+        try {
+            return new AttributeValue(text, true, Double.parseDouble(text), truth);
+        }
+        catch (NumberFormatException e) {
+            return new AttributeValue(text, false, 0, truth);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The attributes of a single {@link Location} or {@link Population}, stored as typed slots sorted by
+ * {@link AttributeKey} and parsed once, when set.
+ *
+ * @implNote
+ *  Each attribute keeps its text, its value as a number (if it is one) and its value as a boolean, in parallel
+ *  arrays. Entities typically have a handful of attributes, so lookups are a short binary search over an int array,
+ *  and there are no per-attribute objects besides the text itself.
+ */
+final class Attributes {
+
+    /**
+     * The number of attributes.
+     */
+    private int size;
+
+    /**
+     * The {@link AttributeKey#getId() key} of each attribute, in increasing order.
+     */
+    private int[] keys;
+
+    /**
+     * The text of each attribute.
+     */
+    private String[] values;
+
+    /**
+     * The value of each attribute as a number, according to {@link AttributeValue#parse(String)}.
+     */
+    private double[] numbers;
+
+    /**
+     * True for each attribute that is a number.
+     */
+    private boolean[] numeric;
+
+    /**
+     * The value of each attribute as a boolean, according to {@link AttributeValue#parse(String)}.
+     */
+    private boolean[] truths;
+
+    /**
+     * Told about every change, if set.
+     */
+    private AttributeListener listener;
+
+    Attributes() {
+        this(0);
+    }
+
+    private Attributes(int capacity) {
+        keys = new int[capacity];
+        values = new String[capacity];
+        numbers = new double[capacity];
+        numeric = new boolean[capacity];
+        truths = new boolean[capacity];
+    }
+
+    /**
+     * @return
+     *  A copy of the attributes, using no more memory than they need. The listener is not copied.
+     */
+    Attributes copy() {
+        Attributes result = new Attributes(size);
+        System.arraycopy(keys, 0, result.keys, 0, size);
+        System.arraycopy(values, 0, result.values, 0, size);
+        System.arraycopy(numbers, 0, result.numbers, 0, size);
+        System.arraycopy(numeric, 0, result.numeric, 0, size);
+        System.arraycopy(truths, 0, result.truths, 0, size);
+        result.size = size;
+        return result;
+    }
+
+    /**
+     * @return
+     *  New attributes holding the given values.
+     */
+    static Attributes of(@NonNull Map<String, String> values) {
+        Attributes result = new Attributes(values.size());
+        values.forEach((name, value) -> result.put(AttributeKey.of(name), value));
+        return result;
+    }
+
+    void setListener(AttributeListener listener) {
+        this.listener = listener;
+    }
+
+    AttributeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the attribute.
+     *
+     * @return
+     *  The attribute's previous text, or null if it was not set.
+     */
+    String put(@NonNull AttributeKey key, @NonNull String value) {
+        AttributeValue previous = null;
+        int at = Arrays.binarySearch(keys, 0, size, key.getId());
+        if (at >= 0) {
+            previous = valueAt(at);
+        }
+        else {
+            at = -(at + 1);
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+                numeric = Arrays.copyOf(numeric, capacity);
+                truths = Arrays.copyOf(truths, capacity);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(values, at, values, at + 1, size - at);
+            System.arraycopy(numbers, at, numbers, at + 1, size - at);
+            System.arraycopy(numeric, at, numeric, at + 1, size - at);
+            System.arraycopy(truths, at, truths, at + 1, size - at);
+            keys[at] = key.getId();
+            size += 1;
+        }
+
+        // Parse once.
+        AttributeValue parsed = AttributeValue.parse(value);
+        values[at] = value;
+        truths[at] = parsed.isTruth();
+        numbers[at] = parsed.getNumber();
+        numeric[at] = parsed.isNumeric();
+
+        if (listener != null) {
+            listener.attributeChanged(key.getName(), previous, parsed);
+        }
+        return previous == null ? null : previous.getText();
+    }
+
+    /**
+     * @return
+     *  The attribute's text, or null if it is not set.
+     */
+    String get(AttributeKey key) {
+        int at = indexOf(key);
+        return at < 0 ? null : values[at];
+    }
+
+    boolean has(AttributeKey key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return
+     *  The attribute as a boolean, or false if it is not set.
+     */
+    boolean getBoolean(AttributeKey key) {
+        int at = indexOf(key);
+        return at >= 0 && truths[at];
+    }
+
+    /**
+     * @return
+     *  The attribute as a number, or 0 if it is not set.
+     * @throws NumberFormatException if the attribute is set but is not a number.
+     */
+    double getNumber(AttributeKey key) {
+        int at = indexOf(key);
+        if (at < 0) {
+            return 0;
+        }
+        if (!numeric[at]) {
+            // Fail exactly as parsing the text would.
+            return Double.valueOf(values[at]);
+        }
+        return numbers[at];
+    }
+
+    /**
+     * @return
+     *  A read-only copy of the attributes, by name.
+     */
+    Map<String, String> toMap() {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            result.put(AttributeKey.byId(keys[i]).getName(), values[i]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Calls the action with the name and (already parsed) value of every attribute.
+     */
+    void forEach(@NonNull BiConsumer<String, AttributeValue> action) {
+        for (int i = 0; i < size; i += 1) {
+            action.accept(AttributeKey.byId(keys[i]).getName(), valueAt(i));
+        }
+    }
+
+    /**
+     * @return
+     *  The value in the slot, from its already parsed forms.
+     */
+    private AttributeValue valueAt(int at) {
+        return new AttributeValue(values[at], numeric[at], numbers[at], truths[at]);
+    }
+
+    /**
+     * @return
+     *  The slot holding the attribute, or a negative number if it is not set.
+     */
+    private int indexOf(AttributeKey key) {
+        return key == null ? -1 : Arrays.binarySearch(keys, 0, size, key.getId());
+    }
+}
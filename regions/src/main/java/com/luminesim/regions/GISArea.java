@@ -47,6 +47,35 @@ public class GISArea {
      */
     private Path2D path = new Path2D.Double();
 
+    /**
+     * The area's geometry, prepared for fast queries. Built on first use and discarded when a point is added.
+     */
+    private volatile Prepared prepared;
+
+    /**
+     * True if the area can no longer be modified.
+     */
+    @Getter
+    private boolean frozen = false;
+
+    /**
+     * @return
+     *  An immutable copy of this area. Returns this instance if it is already frozen.
+     */
+    public GISArea freeze() {
+        if (frozen) {
+            return this;
+        }
+        GISArea result = new GISArea(locationId);
+        for (int i = 0; i < latitudes.size(); i += 1) {
+            result.addPoint(latitudes.get(i), longitudes.get(i));
+        }
+        result.latitudes.trimToSize();
+        result.longitudes.trimToSize();
+        result.frozen = true;
+        return result;
+    }
+
     /**
      * @return True, if the location is a point and not a region.
      */
@@ -100,8 +129,10 @@ public class GISArea {
      *
      * @param latitude
      * @param longitude
+     * @pre area is not frozen
      */
     public void addPoint(double latitude, double longitude) {
+        precondition("GIS area is frozen and cannot be modified.", !frozen);
 
         // Update the path.
         if (latitudes.isEmpty()) {
@@ -113,8 +144,7 @@ public class GISArea {
 
         latitudes.add(latitude);
         longitudes.add(longitude);
-
-
+        prepared = null;
     }
 
     /**
@@ -146,9 +176,15 @@ public class GISArea {
         return Doubles.toArray(longitudes);
     }
 
+    /**
+     * @return
+     *  True, if the point is inside the area. Always false for points and areas of fewer than three points.
+     * @implNote
+     *  Checks the bounding box, then counts crossings of the area's edges, following the same (non-zero winding)
+     *  rules as {@link Path2D#contains(double, double)}. Allocates nothing once the area is prepared.
+     */
     public boolean contains(double lat, double lon) {
-        Area us = new Area(this.path);
-        return us.contains(lat, lon);
+        return prepared().contains(lat, lon);
     }
 
     /**
@@ -182,23 +218,139 @@ public class GISArea {
         }
         // 2. We're a point, they're not.
         else if (this.isPoint() && other.isRegion()) {
-            Area them = new Area(other.path);
-            return them.contains(this.latitudes.get(0), this.longitudes.get(0));
+            return other.contains(this.latitudes.get(0), this.longitudes.get(0));
         }
         // 3. We're a region, they're a point.
         else if (this.isRegion() && other.isPoint()) {
-            Area us = new Area(this.path);
-            return us.contains(other.latitudes.get(0), other.longitudes.get(0));
+            return this.contains(other.latitudes.get(0), other.longitudes.get(0));
         }
         // 4. We're both regions.
         else {
-            // Make the shapes for both areas.
-            // Take the intersect
+            // Regions whose bounding boxes don't overlap can't intersect.
+            Prepared us = prepared();
+            Prepared them = other.prepared();
+            if (!us.overlaps(them)) {
+                return false;
+            }
+
+            // Take the intersect of both shapes.
             // If an empty shape, no intersection.
-            Area us = new Area(path);
-            Area them = new Area(other.path);
-            us.intersect(them);
-            return !us.isEmpty();
+            Area intersection = new Area(us.area());
+            intersection.intersect(them.area());
+            return !intersection.isEmpty();
+        }
+    }
+
+    /**
+     * @return
+     *  The area's prepared geometry, building it if needed.
+     */
+    private Prepared prepared() {
+        Prepared result = prepared;
+        if (result == null) {
+            result = new Prepared(getLatitudes(), getLongitudes(), path);
+            prepared = result;
+        }
+        return result;
+    }
+
+    /**
+     * An area's points as primitive arrays, with their bounding box and (once needed) their {@link Area}.
+     *
+     * @implNote
+     *  Immutable apart from the lazily built {@link Area}, which is safe to build more than once, so instances can
+     *  be shared between threads without locking.
+     */
+    private static final class Prepared {
+        private final double[] xs;
+        private final double[] ys;
+        private final double minX;
+        private final double maxX;
+        private final double minY;
+        private final double maxY;
+
+        /**
+         * A copy of the path, from which the area is built.
+         */
+        private final Path2D path;
+        private volatile Area area;
+
+        Prepared(double[] xs, double[] ys, Path2D path) {
+            this.xs = xs;
+            this.ys = ys;
+            this.path = (Path2D) path.clone();
+            double minX = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < xs.length; i += 1) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        /**
+         * @return
+         *  True, if the point is inside the area.
+         * @see Path2D#contains(double, double)
+         */
+        boolean contains(double x, double y) {
+            if (xs.length < 3 || x < minX || x >= maxX || y < minY || y >= maxY) {
+                return false;
+            }
+            int crossings = 0;
+            int n = xs.length;
+            for (int i = 0, j = n - 1; i < n; j = i, i += 1) {
+                crossings += crossings(x, y, xs[j], ys[j], xs[i], ys[i]);
+            }
+            return crossings != 0;
+        }
+
+        /**
+         * @return
+         *  The signed number of times a ray from (x, y) towards positive x crosses the edge (x0, y0) to (x1, y1).
+         */
+        private static int crossings(double x, double y, double x0, double y0, double x1, double y1) {
+            if (y < y0 && y < y1) {
+                return 0;
+            }
+            if (y >= y0 && y >= y1) {
+                return 0;
+            }
+            if (x >= x0 && x >= x1) {
+                return 0;
+            }
+            if (x < x0 && x < x1) {
+                return y0 < y1 ? 1 : -1;
+            }
+            double intercept = x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+            if (x >= intercept) {
+                return 0;
+            }
+            return y0 < y1 ? 1 : -1;
+        }
+
+        /**
+         * @return
+         *  True, if the bounding boxes of the two areas share some area.
+         */
+        boolean overlaps(Prepared other) {
+            return minX < other.maxX && other.minX < maxX && minY < other.maxY && other.minY < maxY;
+        }
+
+        Area area() {
+            Area result = area;
+            if (result == null) {
+                result = new Area(path);
+                area = result;
+            }
+            return result;
         }
     }
 }
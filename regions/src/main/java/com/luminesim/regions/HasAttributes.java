@@ -6,6 +6,9 @@ import java.util.function.Function;
 
 /**
  * Something with an arbitrary number of attributes.
+ * @implNote
+ *  {@link Location} and {@link Population} parse each attribute once, when it is set, so their typed getters do
+ *  not re-parse text. Reading through an {@link AttributeKey} also skips looking up the attribute's name.
  */
 public interface HasAttributes {
     /**
@@ -59,6 +62,47 @@ public interface HasAttributes {
         return (getAttribute(name, s -> hasAttribute(name) ? Double.valueOf(s) : 0)).intValue();
     }
 
+    /**
+     * @return
+     *  True if the instance has the attribute.
+     * @see AttributeKey
+     */
+    default boolean hasAttribute(@NonNull AttributeKey key) {
+        return hasAttribute(key.getName());
+    }
+
+    /**
+     * As {@link #getBoolean(String)}.
+     * @see AttributeKey
+     */
+    default boolean getBoolean(@NonNull AttributeKey key) {
+        return getBoolean(key.getName());
+    }
+
+    /**
+     * As {@link #getString(String)}.
+     * @see AttributeKey
+     */
+    default String getString(@NonNull AttributeKey key) {
+        return getString(key.getName());
+    }
+
+    /**
+     * As {@link #getNumber(String)}.
+     * @see AttributeKey
+     */
+    default double getNumber(@NonNull AttributeKey key) {
+        return getNumber(key.getName());
+    }
+
+    /**
+     * As {@link #getInteger(String)}.
+     * @see AttributeKey
+     */
+    default int getInteger(@NonNull AttributeKey key) {
+        return (int) getNumber(key);
+    }
+
     /**
      * Sets the attribute.
      * @param name
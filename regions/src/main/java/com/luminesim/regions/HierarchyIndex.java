@@ -0,0 +1,249 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * A read-only index over a location hierarchy, with locations identified by their dense index in the
+ * {@link RegionDataset}, answering "is X under Y", "what is under Y" and "what is above X"
+ * without walking the graph.
+ *
+ * @implNote
+ *  The hierarchy is unfolded into a forest by a depth-first walk from its roots, and each position in the walk
+ *  (an occurrence) is labelled with the interval [pre-order number, pre-order number + subtree size). A location with
+ *  several parents occurs once per path from a root, and every one of its occurrences has an identical subtree,
+ *  so its first occurrence stands for all of them.
+ *  <ul>
+ *      <li>X is under Y if one of X's occurrences falls in Y's first interval: O(1) when X has a single parent chain,
+ *      O(log occurrences of X) otherwise.</li>
+ *      <li>Descendants are a contiguous range of occurrences. Repeats are skipped by checking whether the previous
+ *      occurrence of the same location is already in the range, so iteration allocates nothing.</li>
+ *      <li>Ancestors follow stored parent occurrences: O(depth) per occurrence.</li>
+ *  </ul>
+ *  Hierarchies where many locations share many parents unfold into more occurrences; region hierarchies are
+ *  almost entirely trees, so this is close to one occurrence per location in practice. Hierarchies unfolding into
+ *  more than {@link #MAX_OCCURRENCES_PER_LOCATION} occurrences per location are rejected before anything is
+ *  allocated for them.
+ */
+final class HierarchyIndex {
+
+    /**
+     * The most occurrences (root-to-location paths) allowed per location, bounding the index's memory to a small
+     * multiple of the hierarchy's.
+     */
+    static final long MAX_OCCURRENCES_PER_LOCATION = 8;
+
+    /**
+     * The occurrences of each location, in increasing order.
+     */
+    private final int[][] occurrences;
+
+    /**
+     * The location at each occurrence.
+     */
+    private final int[] locationAt;
+
+    /**
+     * The end (exclusive) of each occurrence's subtree.
+     */
+    private final int[] end;
+
+    /**
+     * The parent occurrence of each occurrence, or -1 for roots.
+     */
+    private final int[] parent;
+
+    /**
+     * The previous occurrence of the same location, or -1 if this is its first.
+     */
+    private final int[] previous;
+
+    /**
+     * Builds the index.
+     *
+     * @param childIndices The direct children of each location.
+     * @pre the hierarchy is acyclic
+     * @pre the hierarchy has at most {@link #MAX_OCCURRENCES_PER_LOCATION} root-to-location paths per location
+     */
+    HierarchyIndex(@NonNull int[][] childIndices) {
+        // Find the roots.
+        int count = childIndices.length;
+        boolean[] hasParent = new boolean[count];
+        for (int[] kids : childIndices) {
+            for (int child : kids) {
+                hasParent[child] = true;
+            }
+        }
+
+        // Count occurrences: the number of paths from a root to each location. Counts stop growing once past the
+        // limit, so stacked diamonds cannot overflow them.
+        long limit = Math.min(MAX_OCCURRENCES_PER_LOCATION * Math.max(count, 1), Integer.MAX_VALUE - 1);
+        long[] paths = new long[count];
+        long occurrenceCount = 0;
+        for (int i : topologicalOrder(childIndices, hasParent)) {
+            if (!hasParent[i]) {
+                paths[i] = 1;
+            }
+            occurrenceCount = Math.min(occurrenceCount + paths[i], limit + 1);
+            for (int child : childIndices[i]) {
+                paths[child] = Math.min(paths[child] + paths[i], limit + 1);
+            }
+        }
+        precondition(
+                "Location hierarchy unfolds into more than " + MAX_OCCURRENCES_PER_LOCATION + " root-to-location paths "
+                        + "per location, because too many locations share too many parents, so it cannot be indexed.",
+                occurrenceCount <= limit);
+
+        // Walk the unfolded forest.
+        int n = (int) occurrenceCount;
+        locationAt = new int[n];
+        end = new int[n];
+        parent = new int[n];
+        previous = new int[n];
+        occurrences = new int[count][];
+        int[] seen = new int[count];
+        int[] last = new int[count];
+        for (int i = 0; i < count; i += 1) {
+            occurrences[i] = new int[(int) paths[i]];
+            last[i] = -1;
+        }
+        int[] stack = new int[n];
+        int[] nextChild = new int[n];
+        int next = 0;
+        for (int root = 0; root < count; root += 1) {
+            if (hasParent[root]) {
+                continue;
+            }
+            int depth = 0;
+            next = visit(root, -1, next, seen, last);
+            stack[0] = next - 1;
+            nextChild[0] = 0;
+            while (depth >= 0) {
+                int occurrence = stack[depth];
+                int[] kids = childIndices[locationAt[occurrence]];
+                if (nextChild[depth] < kids.length) {
+                    int child = kids[nextChild[depth]];
+                    nextChild[depth] += 1;
+                    next = visit(child, occurrence, next, seen, last);
+                    depth += 1;
+                    stack[depth] = next - 1;
+                    nextChild[depth] = 0;
+                }
+                else {
+                    end[occurrence] = next;
+                    depth -= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a new occurrence of the location.
+     *
+     * @return
+     *  The next free occurrence number.
+     */
+    private int visit(int location, int parentOccurrence, int occurrence, int[] seen, int[] last) {
+        locationAt[occurrence] = location;
+        parent[occurrence] = parentOccurrence;
+        previous[occurrence] = last[location];
+        last[location] = occurrence;
+        occurrences[location][seen[location]] = occurrence;
+        seen[location] += 1;
+        return occurrence + 1;
+    }
+
+    /**
+     * @return
+     *  The locations ordered so that every location comes before its children.
+     * @pre the hierarchy is acyclic
+     */
+    private static int[] topologicalOrder(int[][] children, boolean[] hasParent) {
+        int[] parents = new int[children.length];
+        for (int[] kids : children) {
+            for (int child : kids) {
+                parents[child] += 1;
+            }
+        }
+        int[] order = new int[children.length];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < children.length; i += 1) {
+            if (!hasParent[i]) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            for (int child : children[order[head++]]) {
+                parents[child] -= 1;
+                if (parents[child] == 0) {
+                    order[tail++] = child;
+                }
+            }
+        }
+        precondition("Location hierarchy must be acyclic.", tail == children.length);
+        return order;
+    }
+
+    /**
+     * @return
+     *  True, if the descendant is (directly or indirectly) under the ancestor. A location is not under itself.
+     * @pre both locations are indexed
+     */
+    boolean isUnder(int descendant, int ancestor) {
+        int[] ancestorOccurrences = occurrences[ancestor];
+        int[] descendantOccurrences = occurrences[descendant];
+        if (ancestorOccurrences.length == 0 || descendantOccurrences.length == 0) {
+            return false;
+        }
+        int start = ancestorOccurrences[0] + 1;
+        int stop = end[ancestorOccurrences[0]];
+        if (descendantOccurrences.length == 1) {
+            return start <= descendantOccurrences[0] && descendantOccurrences[0] < stop;
+        }
+        int at = Arrays.binarySearch(descendantOccurrences, start);
+        at = at >= 0 ? at : -(at + 1);
+        return at < descendantOccurrences.length && descendantOccurrences[at] < stop;
+    }
+
+    /**
+     * Calls the action once for each location (directly or indirectly) under the given location, in pre-order.
+     *
+     * @pre location is indexed
+     */
+    void forEachUnder(int location, @NonNull IntConsumer action) {
+        int[] own = occurrences[location];
+        if (own.length == 0) {
+            return;
+        }
+        int start = own[0] + 1;
+        int stop = end[own[0]];
+        for (int occurrence = start; occurrence < stop; occurrence += 1) {
+            if (previous[occurrence] < start) {
+                action.accept(locationAt[occurrence]);
+            }
+        }
+    }
+
+    /**
+     * Calls the action once for each location the given location is (directly or indirectly) under,
+     * nearest first along each path to a root.
+     *
+     * @pre location is indexed
+     */
+    void forEachAbove(int location, @NonNull IntConsumer action) {
+        for (int occurrence : occurrences[location]) {
+            for (int above = parent[occurrence]; above >= 0; above = parent[above]) {
+                // Report each ancestor only from its first occurrence, and only for the first of our
+                // occurrences beneath that.
+                if (previous[above] < 0 && previous[occurrence] < above) {
+                    action.accept(locationAt[above]);
+                }
+            }
+        }
+    }
+}
@@ -2,17 +2,20 @@ package com.luminesim.regions;
 
 import lombok.*;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
+import static com.luminesim.qa.ContractUtilities.precondition;
+
 /**
  * A location. May have a parent location.
+ * @implNote
+ *  Locations are identified by ID alone, as IDs are unique within a {@link RegionDataset}.
  */
 @Data
 @RequiredArgsConstructor
 @ToString(of = {"name","id"})
-@EqualsAndHashCode(of ={"id","name"})
+@EqualsAndHashCode(of ={"id"})
 public class Location implements HasAttributes {
 
     /**
@@ -28,7 +31,69 @@ public class Location implements HasAttributes {
     /**
      * Attributes of the location.
      */
-    private Map<String, String> attributes = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Attributes attributes = new Attributes();
+
+    /**
+     * True if the location can no longer be modified.
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean frozen = false;
+
+    /**
+     * @return
+     *  An immutable copy of this location. Returns this instance if it is already frozen.
+     */
+    public Location freeze() {
+        if (frozen) {
+            return this;
+        }
+        Location result = new Location(id, name);
+        result.attributes = attributes.copy();
+        result.frozen = true;
+        return result;
+    }
+
+    /**
+     * @return
+     *  A read-only copy of the location's attributes.
+     */
+    public Map<String, String> getAttributes() {
+        return attributes.toMap();
+    }
+
+    /**
+     * Replaces all attributes.
+     * @param attributes
+     * @pre location is not frozen
+     */
+    public void setAttributes(@NonNull Map<String, String> attributes) {
+        assertNotFrozen();
+        Attributes previous = this.attributes;
+        this.attributes = Attributes.of(attributes);
+        this.attributes.setListener(previous.getListener());
+        if (previous.getListener() != null) {
+            previous.forEach((name, value) -> previous.getListener().attributeChanged(name, value, null));
+            this.attributes.forEach((name, value) -> previous.getListener().attributeChanged(name, null, value));
+        }
+    }
+
+    /**
+     * Sets the listener told about attribute changes, e.g. by the {@link RegionDataset} holding this location so it
+     * can keep its attribute index up to date. Replaces any previous listener.
+     */
+    void setAttributeListener(AttributeListener listener) {
+        attributes.setListener(listener);
+    }
+
+    /**
+     * @return
+     *  The location's attributes themselves, already parsed. Not to be modified.
+     */
+    Attributes attributes() {
+        return attributes;
+    }
 
     /**
      * Gets the attribute, using a default if not present.
@@ -37,20 +102,65 @@ public class Location implements HasAttributes {
      * @return
      */
     public <T> T getAttribute(@NonNull String name, Function<String, T> transform) {
-        return transform.apply(attributes.get(name));
+        return transform.apply(attributes.get(AttributeKey.find(name)));
     }
 
     @Override
     public boolean hasAttribute(@NonNull String name) {
-        return attributes.containsKey(name);
+        return attributes.has(AttributeKey.find(name));
+    }
+
+    @Override
+    public boolean hasAttribute(@NonNull AttributeKey key) {
+        return attributes.has(key);
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String name) {
+        return attributes.getBoolean(AttributeKey.find(name));
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull AttributeKey key) {
+        return attributes.getBoolean(key);
+    }
+
+    @Override
+    public String getString(@NonNull AttributeKey key) {
+        return attributes.get(key);
+    }
+
+    @Override
+    public double getNumber(@NonNull String name) {
+        return attributes.getNumber(AttributeKey.find(name));
+    }
+
+    @Override
+    public double getNumber(@NonNull AttributeKey key) {
+        return attributes.getNumber(key);
+    }
+
+    @Override
+    public int getInteger(@NonNull String name) {
+        return (int) attributes.getNumber(AttributeKey.find(name));
     }
 
     /**
      * Sets the attribute.
      * @param name
      * @param attribute
+     * @pre location is not frozen
+     * @apiNote
+     *  Different locations may be changed from different threads, including locations in the same
+     *  {@link RegionDataset}, whose attribute index is updated under a lock. A single location must not be changed
+     *  from several threads at once.
      */
     public void setAttribute(@NonNull String name, @NonNull String attribute) {
-        attributes.put(name, attribute);
+        assertNotFrozen();
+        attributes.put(AttributeKey.of(name), attribute);
+    }
+
+    private void assertNotFrozen() {
+        precondition("Location is frozen and cannot be modified.", !frozen);
     }
 }
@@ -0,0 +1,64 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+/**
+ * A read-only map from location ID to the location's dense index in a {@link RegionDataset}, held in two flat
+ * arrays rather than a map of boxed entries.
+ *
+ * @implNote
+ *  Open addressing with linear probing, at most half full, so a lookup is a hash and one or two comparisons.
+ */
+final class LocationIdIndex {
+
+    /**
+     * The ID in each slot, or null if the slot is empty.
+     */
+    private final String[] ids;
+
+    /**
+     * The location index in each slot.
+     */
+    private final int[] indices;
+
+    /**
+     * Builds the index.
+     *
+     * @param locations The locations, by index.
+     * @pre location IDs are unique
+     */
+    LocationIdIndex(@NonNull Location[] locations) {
+        int capacity = 2;
+        while (capacity < 2 * locations.length) {
+            capacity <<= 1;
+        }
+        ids = new String[capacity];
+        indices = new int[capacity];
+        for (int i = 0; i < locations.length; i += 1) {
+            int slot = slot(locations[i].getId());
+            while (ids[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            ids[slot] = locations[i].getId();
+            indices[slot] = i;
+        }
+    }
+
+    /**
+     * @return
+     *  The index of the location with the given ID, or -1 if there is none.
+     */
+    int indexOf(@NonNull String id) {
+        for (int slot = slot(id); ids[slot] != null; slot = (slot + 1) & (ids.length - 1)) {
+            if (ids[slot].equals(id)) {
+                return indices[slot];
+            }
+        }
+        return -1;
+    }
+
+    private int slot(String id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (ids.length - 1);
+    }
+}
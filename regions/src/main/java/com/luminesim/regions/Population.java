@@ -1,37 +1,83 @@
 package com.luminesim.regions;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Range;
-import com.google.common.collect.Table;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static com.luminesim.qa.ContractUtilities.precondition;
-import static java.lang.Integer.max;
-import static java.lang.Math.random;
+import static java.lang.Math.max;
 
 /**
  * A population of people.
+ *
+ * @apiNote
+ *  Populations are mutable until {@link #freeze()} is called, which returns an immutable copy that may be shared
+ *  freely between threads.
  */
 public class Population<SegmentType> implements HasAttributes {
 
     /**
-     * The numbers of people in the population.
+     * The segments that may appear in the population.
      */
-    private Table<SegmentType, Range<Integer>, Integer> numbers = HashBasedTable.create();
+    private final SegmentDictionary<SegmentType> segments;
+
+    /**
+     * The numbers of people in the population, indexed by segment (null if the segment is absent).
+     */
+    private AgeBins[] numbers = new AgeBins[0];
+
+    /**
+     * True if the population can no longer be modified.
+     */
+    private boolean frozen = false;
+
+    /**
+     * The total number of people across all segments.
+     * @implNote
+     *  Maintained by {@link #put(Object, int, int, int)}.
+     */
+    private long total = 0;
+
+    /**
+     * Cumulative tables for drawing individuals.
+     * @implNote
+     *  Built on first use and discarded by {@link #put(Object, int, int, int)}.
+     */
+    private volatile Sampler<SegmentType> sampler;
 
 
     /**
      * Attributes of the population.
      */
-    private Map<String, String> attributes = new HashMap<>();
+    private Attributes attributes = new Attributes();
+
+    /**
+     * Creates an empty population with its own segment dictionary.
+     */
+    public Population() {
+        this(new SegmentDictionary<>());
+    }
+
+    /**
+     * Creates an empty population whose segments are interned in the given dictionary.
+     *
+     * @param segments
+     * @apiNote
+     *  Populations that are frequently combined (e.g. all populations in a dataset) should share a dictionary.
+     */
+    public Population(@NonNull SegmentDictionary<SegmentType> segments) {
+        this.segments = segments;
+    }
 
     /**
      *
@@ -42,6 +88,60 @@ public class Population<SegmentType> implements HasAttributes {
         return new Population<>();
     }
 
+    /**
+     *
+     * @return
+     *  An immutable copy of this population, sharing this population's segment dictionary.
+     *  Returns this instance if it is already frozen.
+     */
+    public Population<SegmentType> freeze() {
+        return freeze(segments);
+    }
+
+    /**
+     *
+     * @return
+     *  An immutable copy of this population whose segments are interned in the given dictionary.
+     *  Returns this instance if it is already frozen with that dictionary.
+     * @apiNote
+     *  The copy is safe to share between threads once safely published (e.g. through a final field or a
+     *  concurrent collection).
+     */
+    public Population<SegmentType> freeze(@NonNull SegmentDictionary<SegmentType> dictionary) {
+        if (frozen && dictionary == segments) {
+            return this;
+        }
+        Population<SegmentType> result = new Population<>(dictionary);
+        for (int s = 0; s < numbers.length; s += 1) {
+            if (numbers[s] != null) {
+                result.setBins(segments.get(s), numbers[s].copy());
+            }
+        }
+        result.total = total;
+        result.attributes = attributes.copy();
+        result.frozen = true;
+        return result;
+    }
+
+    /**
+     *
+     * @return
+     *  True, if the population can no longer be modified.
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     *
+     * @return
+     *  The dictionary in which this population's segments are interned.
+     */
+    public SegmentDictionary<SegmentType> getSegmentDictionary() {
+        return segments;
+    }
+
     /**
      *
      * @return
@@ -51,31 +151,104 @@ public class Population<SegmentType> implements HasAttributes {
      *  will be removed from this's cruder breakdowns.
      */
     public Population<SegmentType> excluding(@NonNull Population<SegmentType> B) {
-        // Put all our segments into the new result.
-        Population<SegmentType> result = new Population<>();
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-            SegmentType segment = cell.getRowKey();
-            int start = cell.getColumnKey().lowerEndpoint();
-            int end = cell.getColumnKey().upperEndpoint();
-            int number = getCount(segment, start, end);
-            result.put(segment, start, end, number);
+        return excludingAll(Collections.singletonList(B));
+    }
+
+    /**
+     *
+     * @return
+     *  A new population excluding all of the given populations, as if {@link #excluding(Population)} were applied
+     *  with each in turn. Counts for any of this instance's age ranges never drop below zero.
+     * @implNote
+     *  Each segment is reduced in a single sweep over its bins per subtrahend, without building any intermediate
+     *  populations.
+     */
+    public Population<SegmentType> excludingAll(@NonNull Collection<Population<SegmentType>> others) {
+        Population<SegmentType> result = new Population<>(segments);
+        result.numbers = new AgeBins[numbers.length];
+        for (int s = 0; s < numbers.length; s += 1) {
+            AgeBins bins = numbers[s];
+            if (bins == null) {
+                continue;
+            }
+
+            // Tally up everything to remove from each of our bins.
+            int[] remaining = bins.ownCounts();
+            long[] reductions = new long[remaining.length];
+            for (Population<SegmentType> other : others) {
+                AgeBins theirs = binsOf(other, s);
+                if (theirs != null) {
+                    double[] reduction = theirs.countsOver(bins);
+                    for (int i = 0; i < reduction.length; i += 1) {
+                        reductions[i] += (int)reduction[i];
+                    }
+                }
+            }
+
+            // Remove them.
+            for (int i = 0; i < remaining.length; i += 1) {
+                remaining[i] = (int)max(0, remaining[i] - reductions[i]);
+            }
+            AgeBins reduced = bins.withCounts(remaining);
+            result.numbers[s] = reduced;
+            result.total += reduced.total();
+        }
+        result.attributes = this.attributes.copy();
+        return result;
+    }
+
+    /**
+     *
+     * @return
+     *  A new population containing everyone in this population and everyone in the other population.
+     *  Counts in age ranges that appear in both are added. Where the age ranges differ, each range is split evenly
+     *  at the other population's range edges, so the result has no overlapping age ranges (unless either
+     *  population already did) and the count over any age range made of either population's ranges is exactly the
+     *  sum of the two populations' counts.
+     *  The result has no attributes.
+     * @apiNote
+     *  Commutative, and associative up to how people are rounded when ranges are split, so it can be used as a
+     *  combiner in parallel reductions. Use {@link #rebin(int[])} to put a sum onto particular age bands.
+     * @see #sum(Collection)
+     */
+    public Population<SegmentType> plus(@NonNull Population<SegmentType> other) {
+        Population<SegmentType> result = new Population<>(segments);
+        result.numbers = new AgeBins[numbers.length];
+
+        // Our segments, plus any matching segments of theirs.
+        for (int s = 0; s < numbers.length; s += 1) {
+            if (numbers[s] != null) {
+                AgeBins theirs = binsOf(other, s);
+                result.numbers[s] = theirs == null ? numbers[s].copy() : numbers[s].plus(theirs);
+                result.total += result.numbers[s].total();
+            }
         }
-        result.attributes = new HashMap<>(this.attributes);
-
-        // Begin to reduce.
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-
-            // Is there a match or overlap? If so, don't include them.
-            SegmentType segment = cell.getRowKey();
-            int start = cell.getColumnKey().lowerEndpoint();
-            int end = cell.getColumnKey().upperEndpoint();
-            int number = result.getCount(segment, start, end);
-            int reduction = B.getCount(segment, start, end);
-            result.put(segment, start, end, max(0, number - reduction));
+
+        // Their segments that we don't have.
+        for (int s = 0; s < other.numbers.length; s += 1) {
+            if (other.numbers[s] != null && other.binsOf(this, s) == null) {
+                AgeBins theirs = other.numbers[s].copy();
+                result.setBins(other.segments.get(s), theirs);
+                result.total += theirs.total();
+            }
         }
         return result;
     }
 
+    /**
+     *
+     * @return
+     *  The sum of the populations, computed in parallel.
+     *  An empty population if there are none.
+     * @see #plus(Population)
+     */
+    public static <SegmentType> Population<SegmentType> sum(@NonNull Collection<Population<SegmentType>> populations) {
+        return populations
+                .parallelStream()
+                .reduce(Population::plus)
+                .orElseGet(Population::new);
+    }
+
     /**
      *
      * @param B
@@ -87,39 +260,96 @@ public class Population<SegmentType> implements HasAttributes {
         Population<SegmentType> A = this;
 
         // All of B's segments must overlap A's.
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : B.numbers.cellSet()) {
-            SegmentType segment = cell.getRowKey();
-            int start = cell.getColumnKey().lowerEndpoint();
-            int end = cell.getColumnKey().upperEndpoint();
-            if (!A.hasIntersectingPopulation(segment, start, end)) {
+        for (int s = 0; s < B.numbers.length; s += 1) {
+            AgeBins theirs = B.numbers[s];
+            if (theirs == null || theirs.size() == 0) {
+                continue;
+            }
+            AgeBins ours = B.binsOf(A, s);
+            if (ours == null || !ours.intersectsEach(theirs)) {
                 return false;
             }
         }
 
-        // For each of our segments, decrement when we see something from B. If any are negative, we don't entirely contain.
+        // For each of our segments, B must not have more people than we do in any of our age ranges.
+        for (int s = 0; s < A.numbers.length; s += 1) {
+            AgeBins ours = A.numbers[s];
+            AgeBins theirs = ours == null ? null : binsOf(B, s);
+            if (theirs == null) {
+                continue;
+            }
+            int[] number = ours.ownCounts();
+            double[] reduction = theirs.countsOver(ours);
+            for (int i = 0; i < number.length; i += 1) {
+                if (number[i] - (int)reduction[i] < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 
-        // Put all our segments into the new result.
-        Population<SegmentType> result = new Population<>();
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-            SegmentType segment = cell.getRowKey();
-            int start = cell.getColumnKey().lowerEndpoint();
-            int end = cell.getColumnKey().upperEndpoint();
-            int number = getCount(segment, start, end);
-            result.put(segment, start, end, number);
+    /**
+     *
+     * @return
+     *  True, if the population entirely contains all of the other populations together, i.e. if each passes
+     *  {@link #entirelyContains(Population)} against what is left after {@link #excluding(Population) excluding} the
+     *  ones before it.
+     * @implNote
+     *  When none of our segments have overlapping age ranges, what is left only shrinks, so it is enough to check
+     *  that the combined reductions fit within each of our age ranges: a single sweep per segment per population,
+     *  without building any intermediate populations. Otherwise falls back to excluding each in turn.
+     */
+    public boolean entirelyContainsAll(@NonNull Collection<Population<SegmentType>> others) {
+        // Fall back to the step-by-step definition if any of our age ranges overlap.
+        for (AgeBins bins : numbers) {
+            if (bins != null && !bins.isDisjoint()) {
+                Population<SegmentType> remaining = this;
+                for (Population<SegmentType> B : others) {
+                    if (!remaining.entirelyContains(B)) {
+                        return false;
+                    }
+                    remaining = remaining.excluding(B);
+                }
+                return true;
+            }
         }
-        // Start subtracting.
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-
-            // Is there a match or overlap? If so, don't include them.
-            SegmentType segment = cell.getRowKey();
-            int start = cell.getColumnKey().lowerEndpoint();
-            int end = cell.getColumnKey().upperEndpoint();
-            int number = result.getCount(segment, start, end);
-            int reduction = B.getCount(segment, start, end);
-            if (number - reduction < 0) {
-                return false;
+
+        // All of each population's segments must overlap ours.
+        for (Population<SegmentType> B : others) {
+            for (int s = 0; s < B.numbers.length; s += 1) {
+                AgeBins theirs = B.numbers[s];
+                if (theirs == null || theirs.size() == 0) {
+                    continue;
+                }
+                AgeBins ours = B.binsOf(this, s);
+                if (ours == null || !ours.intersectsEach(theirs)) {
+                    return false;
+                }
+            }
+        }
+
+        // Together, they must not have more people than we do in any of our age ranges.
+        for (int s = 0; s < numbers.length; s += 1) {
+            AgeBins ours = numbers[s];
+            if (ours == null) {
+                continue;
+            }
+            long[] reductions = new long[ours.size()];
+            for (Population<SegmentType> B : others) {
+                AgeBins theirs = binsOf(B, s);
+                if (theirs != null) {
+                    double[] reduction = theirs.countsOver(ours);
+                    for (int i = 0; i < reduction.length; i += 1) {
+                        reductions[i] += (int)reduction[i];
+                    }
+                }
+            }
+            for (int i = 0; i < reductions.length; i += 1) {
+                if (ours.getCount(i) - reductions[i] < 0) {
+                    return false;
+                }
             }
-            result.put(segment, start, end, max(0, number - reduction));
         }
         return true;
     }
@@ -139,7 +369,17 @@ public class Population<SegmentType> implements HasAttributes {
      *  The total number of people in this population.
      */
     public int size() {
-        return numbers.values().stream().mapToInt(x -> x).sum();
+        return (int)total;
+    }
+
+    /**
+     *
+     * @return
+     *  The total number of people in the segment, or zero if the segment is not present.
+     */
+    public int size(@NonNull SegmentType segment) {
+        AgeBins bins = binsOf(segment);
+        return bins == null ? 0 : (int)bins.total();
     }
 
     /**
@@ -153,8 +393,40 @@ public class Population<SegmentType> implements HasAttributes {
         precondition("Start age must be non-negative.", startAgeInclusive >= 0);
         precondition("Start age must <= end age.", startAgeInclusive <= endAgeExclusive);
         precondition("Cound must be non-negative.", count >= 0);
+        assertNotFrozen();
 
-        numbers.put(segment, Range.closedOpen(startAgeInclusive, endAgeExclusive), count);
+        int previous = binsForUpdate(segment).put(startAgeInclusive, endAgeExclusive, count);
+        total += count - previous;
+        sampler = null;
+    }
+
+    /**
+     * Draws individuals from the population, weighting each age bin by its count and spreading ages evenly within
+     * each bin.
+     *
+     * @param n The number of individuals to draw.
+     * @param rng The source of randomness. Using a separate instance per thread makes draws reproducible.
+     * @param sink Receives each drawn individual.
+     * @pre n >= 0
+     * @pre population is not empty if n > 0
+     * @implNote
+     *  Each draw is a binary search over a precomputed cumulative table, shared across calls.
+     */
+    public void sample(int n, @NonNull SplittableRandom rng, @NonNull AgeSegmentSink<SegmentType> sink) {
+
+        // Sanity check.
+        precondition("Sample size must be non-negative.", n >= 0);
+        precondition("Cannot sample from an empty population.", n == 0 || !isEmpty());
+
+        // Draw.
+        Sampler<SegmentType> table = sampler;
+        if (table == null) {
+            table = new Sampler<>(this);
+            sampler = table;
+        }
+        for (int i = 0; i < n; i += 1) {
+            table.draw(rng, sink);
+        }
     }
 
     /**
@@ -169,10 +441,10 @@ public class Population<SegmentType> implements HasAttributes {
 
         // Tally up.
         double total = 0;
-        Range<Integer> them = Range.closedOpen(startAgeInclusive, endAgeExclusive);
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-            SegmentType ourType = cell.getRowKey();
-            total += getContribution(them, cell, ourType);
+        for (AgeBins bins : numbers) {
+            if (bins != null) {
+                total += bins.count(startAgeInclusive, endAgeExclusive);
+            }
         }
         return (int)total;
     }
@@ -186,53 +458,96 @@ public class Population<SegmentType> implements HasAttributes {
         precondition("Start age must be non-negative.", startAgeInclusive >= 0);
         precondition("Start age must <= end age.", startAgeInclusive <= endAgeExclusive);
 
-        double total = 0;
-        Range<Integer> them = Range.closedOpen(startAgeInclusive, endAgeExclusive);
-        for (Table.Cell<SegmentType, Range<Integer>, Integer> cell : numbers.cellSet()) {
-            // Move on if not the right segment.
-            SegmentType ourType = cell.getRowKey();
-            if (!ourType.equals(segment)) {
-                continue;
+        AgeBins bins = binsOf(segment);
+        return bins == null ? 0 : (int)bins.count(startAgeInclusive, endAgeExclusive);
+    }
+
+    /**
+     * @param edges The age band edges, e.g. {0, 5, 18, 65, 120} for 0-4, 5-17, 18-64 and 65-119.
+     * @return
+     *  The number of people in each age band [edges[i], edges[i + 1]), rounding down, as if
+     *  {@link #getCount(int, int)} were called for each band.
+     * @pre edges.length >= 2
+     * @pre 0 <= edges[0] and edges are strictly increasing
+     * @implNote
+     *  Each segment is swept once against all bands, i.e. O(bins + bands) per segment.
+     */
+    public int[] getCounts(@NonNull int[] edges) {
+        // Sanity check.
+        assertValidEdges(edges);
+
+        // Tally up.
+        AgeBins bands = AgeBins.bands(edges);
+        double[] totals = new double[bands.size()];
+        for (AgeBins bins : numbers) {
+            if (bins != null) {
+                double[] counts = bins.countsOver(bands);
+                for (int i = 0; i < totals.length; i += 1) {
+                    totals[i] += counts[i];
+                }
             }
-            total += getContribution(them, cell, ourType);
         }
-        return (int)total;
+        return truncate(totals);
     }
 
-    private double getContribution(@NonNull Range<Integer> them,
-                                   @NonNull Table.Cell<SegmentType, Range<Integer>, Integer> cell,
-                                   @NonNull SegmentType ourType) {
-        double total = 0;
-        Range<Integer> us = cell.getColumnKey();
-        // Five cases:
-        // 0. No overlap at all.
-        if (!us.isConnected(them)) {
-            total = 0;
-        }
-        // 1. The range is exactly us.
-        else if (us.intersection(them).equals(us)) {
-            total = numbers.get(ourType, us);
-        }
-        // 2. They enclose us
-        else if (them.encloses(us)) {
-            total = numbers.get(ourType, us);
+    /**
+     * @param edges The age band edges, e.g. {0, 5, 18, 65, 120} for 0-4, 5-17, 18-64 and 65-119.
+     * @return
+     *  The number of people in the segment in each age band [edges[i], edges[i + 1]), rounding down, as if
+     *  {@link #getCount(Object, int, int)} were called for each band.
+     * @pre edges.length >= 2
+     * @pre 0 <= edges[0] and edges are strictly increasing
+     */
+    public int[] getCounts(@NonNull SegmentType segment, @NonNull int[] edges) {
+        // Sanity check.
+        assertValidEdges(edges);
+
+        AgeBins bins = binsOf(segment);
+        return bins == null ? new int[edges.length - 1] : truncate(bins.countsOver(AgeBins.bands(edges)));
+    }
+
+    /**
+     * @param edges The age band edges, e.g. {0, 5, 18, 65, 120} for 0-4, 5-17, 18-64 and 65-119.
+     * @return
+     *  A new population with the same segments and attributes, where each segment is broken down into the age
+     *  bands [edges[i], edges[i + 1]). Counts are rounded down, as in {@link #getCount(Object, int, int)}.
+     * @pre edges.length >= 2
+     * @pre 0 <= edges[0] and edges are strictly increasing
+     * @implNote
+     *  Each segment is swept once against all bands, i.e. O(bins + bands) per segment.
+     */
+    public Population<SegmentType> rebin(@NonNull int[] edges) {
+        // Sanity check.
+        assertValidEdges(edges);
+
+        // Re-bin each segment.
+        AgeBins bands = AgeBins.bands(edges);
+        Population<SegmentType> result = new Population<>(segments);
+        result.numbers = new AgeBins[numbers.length];
+        for (int s = 0; s < numbers.length; s += 1) {
+            if (numbers[s] != null) {
+                result.numbers[s] = bands.withCounts(truncate(numbers[s].countsOver(bands)));
+                result.total += result.numbers[s].total();
+            }
         }
-        // 3. We enclose them
-        else if (us.encloses(them)) {
-            double theirSpan = them.upperEndpoint() - them.lowerEndpoint();
-            double ourSpan = us.upperEndpoint() - us.lowerEndpoint();
-            double fractionToAdd = theirSpan / ourSpan;
-            total = fractionToAdd * numbers.get(ourType, us);
+        result.attributes = this.attributes.copy();
+        return result;
+    }
+
+    static void assertValidEdges(@NonNull int[] edges) {
+        precondition("There must be at least two age band edges.", edges.length >= 2);
+        precondition("Age band edges must be non-negative.", edges[0] >= 0);
+        for (int i = 1; i < edges.length; i += 1) {
+            precondition("Age band edges must be strictly increasing.", edges[i - 1] < edges[i]);
         }
-        // 4. There is overlap.
-        else {
-            double ourNormalSpan = us.upperEndpoint() - us.lowerEndpoint();
-            Range<Integer> intersection = us.intersection(them);
-            double intersectionSpan = intersection.upperEndpoint() - intersection.lowerEndpoint();
-            double fractionToAdd = intersectionSpan / ourNormalSpan;
-            total = fractionToAdd * numbers.get(ourType, us);
+    }
+
+    private static int[] truncate(@NonNull double[] counts) {
+        int[] result = new int[counts.length];
+        for (int i = 0; i < counts.length; i += 1) {
+            result[i] = (int)counts[i];
         }
-        return total;
+        return result;
     }
 
     /**
@@ -251,8 +566,82 @@ public class Population<SegmentType> implements HasAttributes {
         precondition("Start age must be non-negative.", startAgeInclusive >= 0);
         precondition("Start age must <= end age.", startAgeInclusive <= endAgeExclusive);
 
-        Range<Integer> them = Range.closedOpen(startAgeInclusive, endAgeExclusive);
-        return numbers.row(segment).keySet().stream().anyMatch(us -> us.isConnected(them) && !us.intersection(them).isEmpty());
+        AgeBins bins = binsOf(segment);
+        return bins != null && bins.intersects(startAgeInclusive, endAgeExclusive);
+    }
+
+    /**
+     * @return
+     *  The bins for the segment with the given index in this population's dictionary, or null if it is absent.
+     */
+    AgeBins binsAt(int segmentIndex) {
+        return segmentIndex < numbers.length ? numbers[segmentIndex] : null;
+    }
+
+    /**
+     * @return
+     *  A new population using this population's dictionary and attributes, with the given bins per segment index.
+     * @apiNote
+     *  For package use by engines that compute bins directly.
+     */
+    Population<SegmentType> withBins(@NonNull AgeBins[] bins) {
+        Population<SegmentType> result = new Population<>(segments);
+        result.numbers = bins;
+        for (AgeBins b : bins) {
+            if (b != null) {
+                result.total += b.total();
+            }
+        }
+        result.attributes = this.attributes.copy();
+        return result;
+    }
+
+    /**
+     * @return
+     *  The bins for the segment, or null if it is absent.
+     */
+    private AgeBins binsOf(@NonNull SegmentType segment) {
+        int s = segments.indexOf(segment);
+        return s >= 0 && s < numbers.length ? numbers[s] : null;
+    }
+
+    /**
+     * @return
+     *  The other population's bins for the segment with index s in this population's dictionary, or null if absent.
+     */
+    private AgeBins binsOf(@NonNull Population<SegmentType> other, int s) {
+        if (other.segments == segments) {
+            return s < other.numbers.length ? other.numbers[s] : null;
+        }
+        return other.binsOf(segments.get(s));
+    }
+
+    /**
+     * @return
+     *  The bins for the segment, creating them if needed.
+     */
+    private AgeBins binsForUpdate(@NonNull SegmentType segment) {
+        AgeBins bins = binsOf(segment);
+        if (bins == null) {
+            bins = new AgeBins();
+            setBins(segment, bins);
+        }
+        return bins;
+    }
+
+    /**
+     * Sets the bins for the segment, interning the segment if needed.
+     */
+    private void setBins(@NonNull SegmentType segment, @NonNull AgeBins bins) {
+        int s = segments.intern(segment);
+        if (s >= numbers.length) {
+            numbers = Arrays.copyOf(numbers, segments.size());
+        }
+        numbers[s] = bins;
+    }
+
+    private void assertNotFrozen() {
+        precondition("Population is frozen and cannot be modified.", !frozen);
     }
 
     /**
@@ -261,12 +650,16 @@ public class Population<SegmentType> implements HasAttributes {
      * @pre action not null
      */
     public void forEachSegment(@NonNull Consumer<Segment> action) {
-        numbers.cellSet().forEach(cell -> action.accept(new Segment(
-                cell.getRowKey(),
-                cell.getColumnKey().lowerEndpoint(),
-                cell.getColumnKey().upperEndpoint(),
-                cell.getValue()
-        )));
+        for (int s = 0; s < numbers.length; s += 1) {
+            AgeBins bins = numbers[s];
+            if (bins == null) {
+                continue;
+            }
+            SegmentType segment = segments.get(s);
+            for (int i = 0; i < bins.size(); i += 1) {
+                action.accept(new Segment(segment, bins.getStart(i), bins.getEnd(i), bins.getCount(i)));
+            }
+        }
     }
 
     /**
@@ -276,21 +669,78 @@ public class Population<SegmentType> implements HasAttributes {
      * @return
      */
     public <T> T getAttribute(@NonNull String name, Function<String, T> transform) {
-        return transform.apply(attributes.get(name));
+        return transform.apply(attributes.get(AttributeKey.find(name)));
     }
 
     @Override
     public boolean hasAttribute(@NonNull String name) {
-        return attributes.containsKey(name);
+        return attributes.has(AttributeKey.find(name));
+    }
+
+    @Override
+    public boolean hasAttribute(@NonNull AttributeKey key) {
+        return attributes.has(key);
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull String name) {
+        return attributes.getBoolean(AttributeKey.find(name));
+    }
+
+    @Override
+    public boolean getBoolean(@NonNull AttributeKey key) {
+        return attributes.getBoolean(key);
+    }
+
+    @Override
+    public String getString(@NonNull AttributeKey key) {
+        return attributes.get(key);
+    }
+
+    @Override
+    public double getNumber(@NonNull String name) {
+        return attributes.getNumber(AttributeKey.find(name));
+    }
+
+    @Override
+    public double getNumber(@NonNull AttributeKey key) {
+        return attributes.getNumber(key);
+    }
+
+    @Override
+    public int getInteger(@NonNull String name) {
+        return (int) attributes.getNumber(AttributeKey.find(name));
     }
 
     /**
      * Sets the attribute.
      * @param name
      * @param attribute
+     * @apiNote
+     *  Different populations may be changed from different threads, including populations in the same
+     *  {@link RegionDataset}, whose attribute index is updated under a lock. A single population must not be
+     *  changed from several threads at once.
      */
     public void setAttribute(@NonNull String name, @NonNull String attribute) {
-        attributes.put(name, attribute);
+        assertNotFrozen();
+        attributes.put(AttributeKey.of(name), attribute);
+    }
+
+    /**
+     * Sets the listener told about attribute changes, e.g. by the {@link RegionDataset} holding this population so
+     * it can keep its attribute index up to date. Replaces any previous listener; not carried over to derived
+     * populations.
+     */
+    void setAttributeListener(AttributeListener listener) {
+        attributes.setListener(listener);
+    }
+
+    /**
+     * @return
+     *  The population's attributes themselves, already parsed. Not to be modified.
+     */
+    Attributes attributes() {
+        return attributes;
     }
 
     /**
@@ -313,7 +763,76 @@ public class Population<SegmentType> implements HasAttributes {
          * @apiNote Convenience method.
          */
         public double getAge() {
-            return random() * (endAgeExclusive - startAgeInclusive) + startAgeInclusive;
+            return getAge(ThreadLocalRandom.current().nextDouble());
+        }
+
+        /**
+         *
+         * @return
+         *  A random age within the segment.
+         */
+        public double getAge(@NonNull SplittableRandom rng) {
+            return getAge(rng.nextDouble());
+        }
+
+        private double getAge(double random) {
+            return random * (endAgeExclusive - startAgeInclusive) + startAgeInclusive;
+        }
+    }
+
+    /**
+     * Cumulative tables over every (segment, age bin) of a population.
+     */
+    private static final class Sampler<SegmentType> {
+        private final Object[] segments;
+        private final int[] starts;
+        private final int[] ends;
+
+        /**
+         * cumulative[i] is the number of people in bins [0, i].
+         */
+        private final long[] cumulative;
+
+        Sampler(Population<SegmentType> population) {
+            int size = Arrays.stream(population.numbers).mapToInt(b -> b == null ? 0 : b.size()).sum();
+            segments = new Object[size];
+            starts = new int[size];
+            ends = new int[size];
+            cumulative = new long[size];
+            int i = 0;
+            long total = 0;
+            for (int s = 0; s < population.numbers.length; s += 1) {
+                AgeBins bins = population.numbers[s];
+                if (bins == null) {
+                    continue;
+                }
+                for (int j = 0; j < bins.size(); j += 1, i += 1) {
+                    total += bins.getCount(j);
+                    segments[i] = population.segments.get(s);
+                    starts[i] = bins.getStart(j);
+                    ends[i] = bins.getEnd(j);
+                    cumulative[i] = total;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void draw(SplittableRandom rng, AgeSegmentSink<SegmentType> sink) {
+            // Find the first bin whose cumulative count exceeds the draw.
+            long target = rng.nextLong(cumulative[cumulative.length - 1]);
+            int lo = 0;
+            int hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] <= target) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            double age = starts[lo] + rng.nextDouble() * (ends[lo] - starts[lo]);
+            sink.accept((SegmentType) segments[lo], age);
         }
     }
 
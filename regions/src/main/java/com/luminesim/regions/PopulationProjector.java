@@ -0,0 +1,243 @@
+package com.luminesim.regions;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Advances {@link Population}s forward in time, one year per step, using the cohort-component method:
+ * everyone ages by a year, a share of each single-year age cohort dies, and births are added at age zero.
+ *
+ * @apiNote
+ *  Rates are given per segment as arrays indexed by single-year age. Ages past the end of an array use the array's
+ *  last rate; segments without rates have none of that event.
+ *  Example: {@code PopulationProjector.<String>builder().mortality("All", deathRates).fertility("All", birthRates)
+ *  .birthShare("All", 1.0).build().project(population)}
+ * @implNote
+ *  Each segment is spread evenly into single-year ages, projected over primitive arrays, then re-aggregated
+ *  onto the population's original age bins, rounding to whole people once at the end. People ageing into a gap
+ *  between bins are counted in the next bin. The oldest bin is treated as open-ended, so people ageing past its
+ *  end stay in it. Projection is stateless, so many populations can be
+ *  projected in parallel.
+ */
+public class PopulationProjector<SegmentType> {
+
+    /**
+     * The annual probability of death, by segment and then by single-year age.
+     */
+    private final Map<SegmentType, double[]> mortality;
+
+    /**
+     * The annual number of births per person, by segment (of the parent) and then by single-year age.
+     */
+    private final Map<SegmentType, double[]> fertility;
+
+    /**
+     * The share of births assigned to each segment, e.g. {Male: 0.51, Female: 0.49}.
+     */
+    private final Map<SegmentType, Double> birthShares;
+
+    /**
+     * @pre mortality rates in [0, 1]
+     * @pre fertility rates >= 0
+     * @pre birth shares >= 0
+     */
+    @Builder
+    private PopulationProjector(@Singular("mortality") Map<SegmentType, double[]> mortality,
+                                @Singular("fertility") Map<SegmentType, double[]> fertility,
+                                @Singular Map<SegmentType, Double> birthShares) {
+        // Sanity check.
+        mortality.forEach((segment, rates) -> Arrays.stream(rates).forEach(rate -> precondition(
+                () -> "Mortality rates must be in [0, 1] but " + segment + " has " + rate, rate >= 0 && rate <= 1)));
+        fertility.forEach((segment, rates) -> Arrays.stream(rates).forEach(rate -> precondition(
+                () -> "Fertility rates must be non-negative but " + segment + " has " + rate, rate >= 0)));
+        birthShares.forEach((segment, share) -> precondition(
+                () -> "Birth shares must be non-negative but " + segment + " has " + share, share >= 0));
+
+        // Record.
+        this.mortality = copy(mortality);
+        this.fertility = copy(fertility);
+        this.birthShares = Collections.unmodifiableMap(new HashMap<>(birthShares));
+    }
+
+    /**
+     * @return
+     *  A new population one year on from the given population.
+     * @pre no two of the population's age bins overlap within a segment
+     * @pre every age bin is at least a year wide
+     * @pre if there are births, every segment with a birth share is in the population and has a bin containing age 0
+     */
+    public Population<SegmentType> project(@NonNull Population<SegmentType> population) {
+        return project(population, 1);
+    }
+
+    /**
+     * @return
+     *  A new population, the given population after the given number of years.
+     * @pre years >= 0
+     * @pre no two of the population's age bins overlap within a segment
+     * @pre every age bin is at least a year wide
+     * @pre if there are births, every segment with a birth share is in the population and has a bin containing age 0
+     * @implNote
+     *  People are carried as fractional single-year counts from one year to the next and only rounded at the end,
+     *  so rounding does not build up over long projections.
+     */
+    public Population<SegmentType> project(@NonNull Population<SegmentType> population, int years) {
+        precondition("Years must be non-negative.", years >= 0);
+        SegmentDictionary<SegmentType> segments = population.getSegmentDictionary();
+        int segmentCount = segments.size();
+        if (years == 0) {
+            AgeBins[] same = new AgeBins[segmentCount];
+            for (int s = 0; s < segmentCount; s += 1) {
+                AgeBins bins = population.binsAt(s);
+                same[s] = bins == null ? null : bins.copy();
+            }
+            return population.withBins(same);
+        }
+
+        // Spread everyone into single-year ages.
+        double[][] byAge = new double[segmentCount][];
+        for (int s = 0; s < segmentCount; s += 1) {
+            AgeBins bins = population.binsAt(s);
+            if (bins == null || bins.size() == 0) {
+                continue;
+            }
+            precondition(() -> "Age bins must not overlap to be projected: " + population, bins.isDisjoint());
+            for (int i = 0; i < bins.size(); i += 1) {
+                precondition("Age bins must be at least a year wide to be projected.", bins.getEnd(i) > bins.getStart(i));
+            }
+            byAge[s] = spread(bins);
+        }
+
+        // Project.
+        for (int year = 0; year < years; year += 1) {
+            byAge = step(population, byAge);
+        }
+
+        // Put everyone back into their bins.
+        AgeBins[] result = new AgeBins[segmentCount];
+        for (int s = 0; s < segmentCount; s += 1) {
+            if (byAge[s] != null) {
+                result[s] = gather(population.binsAt(s), byAge[s]);
+            }
+        }
+        return population.withBins(result);
+    }
+
+    /**
+     * @return
+     *  The number of people at each single-year age a year on: everyone ages by a year, the dead are removed and
+     *  births are added at age zero.
+     */
+    private double[][] step(Population<SegmentType> population, double[][] byAge) {
+        SegmentDictionary<SegmentType> segments = population.getSegmentDictionary();
+
+        // Age everyone, removing the dead, and work out the resulting births.
+        double[][] result = new double[byAge.length][];
+        double births = 0;
+        for (int s = 0; s < byAge.length; s += 1) {
+            double[] current = byAge[s];
+            if (current == null) {
+                continue;
+            }
+            double[] deaths = mortality.get(segments.get(s));
+            double[] fertile = fertility.get(segments.get(s));
+            double[] next = new double[current.length];
+            for (int age = 0; age < current.length; age += 1) {
+                births += current[age] * rate(fertile, age);
+                next[Math.min(age + 1, current.length - 1)] += current[age] * (1 - rate(deaths, age));
+            }
+            result[s] = next;
+        }
+
+        // Add births.
+        if (births > 0) {
+            for (Map.Entry<SegmentType, Double> share : birthShares.entrySet()) {
+                int s = segments.indexOf(share.getKey());
+                AgeBins bins = s < 0 ? null : population.binsAt(s);
+                precondition(
+                        () -> "Births are assigned to " + share.getKey() + ", which needs a bin containing age 0.",
+                        bins != null && bins.size() > 0 && bins.getStart(0) == 0 && bins.getEnd(0) > 0);
+                result[s][0] += births * share.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Projects many populations in parallel.
+     *
+     * @return
+     *  The populations after the given number of years, in the same order as given.
+     * @pre years >= 0
+     */
+    public List<Population<SegmentType>> projectAll(@NonNull List<Population<SegmentType>> populations, int years) {
+        precondition("Years must be non-negative.", years >= 0);
+        return populations
+                .parallelStream()
+                .map(population -> project(population, years))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return
+     *  The number of people at each single-year age, spreading each bin's people evenly.
+     * @pre every bin is at least a year wide
+     */
+    private static double[] spread(AgeBins bins) {
+        double[] result = new double[bins.getEnd(bins.size() - 1)];
+        for (int i = 0; i < bins.size(); i += 1) {
+            int start = bins.getStart(i);
+            int end = bins.getEnd(i);
+            double perYear = (double) bins.getCount(i) / (end - start);
+            for (int age = start; age < end; age += 1) {
+                result[age] += perYear;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return
+     *  The bins with counts taken from the single-year ages, with ages in a gap between bins counted in the next
+     *  bin. Rounded to whole people with {@link Rounding#largestRemainder(double[])}, so the bins add up to the
+     *  rounded total.
+     */
+    private static AgeBins gather(AgeBins bins, double[] byAge) {
+        double[] totals = new double[bins.size()];
+        int bin = 0;
+        for (int age = 0; age < byAge.length; age += 1) {
+            while (bins.getEnd(bin) <= age) {
+                bin += 1;
+            }
+            totals[bin] += byAge[age];
+        }
+        return bins.withCounts(Rounding.largestRemainder(totals));
+    }
+
+    /**
+     * @return
+     *  The rate at the given age, using the last rate for ages past the end and zero if there are no rates.
+     */
+    private static double rate(double[] rates, int age) {
+        if (rates == null || rates.length == 0) {
+            return 0;
+        }
+        return rates[Math.min(age, rates.length - 1)];
+    }
+
+    private static <SegmentType> Map<SegmentType, double[]> copy(Map<SegmentType, double[]> rates) {
+        Map<SegmentType, double[]> result = new HashMap<>();
+        rates.forEach((segment, values) -> result.put(segment, values.clone()));
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -1,15 +1,18 @@
 package com.luminesim.regions;
 
 
-import com.luminesim.regions.io.POIGroupCSVRow;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.jgrapht.graph.DirectedAcyclicGraph;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.luminesim.qa.ContractUtilities.*;
 
@@ -17,6 +20,14 @@ import static com.luminesim.qa.ContractUtilities.*;
  * A full region dataset.
  * @implNote
  *  This acts as a facade, allowing quick access to all aspects of the region.
+ *  Each location is given a dense index (0, 1, 2, ...) in the order it is added. Everything known about a location
+ *  is stored by that index, so the int overloads of the query methods are array reads; the String overloads
+ *  look the index up once.
+ *  A dataset is built up through its add/set methods and can then be {@link #freeze() frozen} into an immutable
+ *  snapshot that many threads can query at once.
+ *  While it is being built, its add/set methods must be called from one thread at a time. Attributes of its
+ *  locations and populations are the exception: different ones may be set from different threads, as the
+ *  attribute indices are updated under a lock.
  */
 @NoArgsConstructor(access = AccessLevel.NONE)
 @Slf4j
@@ -26,45 +37,311 @@ public class RegionDataset {
      * should be placed. E.g. A location without any hierarchy randomly distributes the items within;
      * a location with subdivisions for schools, businesses, residential areas, etc. should allocate those populations
      * accordingly.
+     * Held as adjacency lists of location indices: the first childCounts[i] entries of children[i] are the direct
+     * sublocations of location i, and likewise for parents.
+     * Once frozen, only the parent counts are kept and the children are held in {@link #childStarts} and
+     * {@link #childList} instead.
      */
-    private DirectedAcyclicGraph<Location, Object> hierarchy = new DirectedAcyclicGraph<>(Object.class);
-    private Map<Location, Set<Location>> directSublocations = new HashMap<>();
+    private int[][] children = new int[16][];
+    private int[] childCounts = new int[16];
+    private int[][] parents = new int[16][];
+    private int[] parentCounts = new int[16];
 
     /**
-     * The locations (points or areas of interest) in the region.
+     * The direct sublocations of each location once frozen, in compressed sparse row form: those of location i
+     * are childList[childStarts[i]] up to (but not including) childList[childStarts[i + 1]]. Null until frozen.
      */
-    private Map<String, Location> locations = new HashMap<>();
+    private int[] childStarts;
+    private int[] childList;
 
     /**
-     * The area each location occupies in the region.
+     * Scratch space for cycle checks: the check in which each location was last visited.
      */
-    private Map<String, GISArea> areas = new HashMap<>();
+    private int[] visited = new int[16];
+    private int visit = 0;
 
     /**
-     * The populations in the region.
+     * An index over the hierarchy for sublocation and ancestor queries.
+     * Built on first use and discarded whenever the hierarchy changes.
      */
-    private Map<String, Population<String>> populations = new HashMap<>();
+    private volatile HierarchyIndex hierarchyIndex;
 
     /**
-     * The POI groups in the region.
+     * The index of each location, by location ID. Replaced by {@link #frozenIndices} once frozen.
      */
-    private Map<String, List<POIGroup>> poiGroups = new HashMap<>();
+    private Map<String, Integer> indices = new HashMap<>();
+    private LocationIdIndex frozenIndices;
+
+    /**
+     * The locations (points or areas of interest) in the region, by location index.
+     */
+    private List<Location> locations = new ArrayList<>();
+
+    /**
+     * The area each location occupies in the region, by location index (null if not set).
+     */
+    private List<GISArea> areas = new ArrayList<>();
+
+    /**
+     * The populations in the region, by location index (null if not set).
+     */
+    private List<Population<String>> populations = new ArrayList<>();
+
+    /**
+     * The segments used by all populations in the region.
+     */
+    private SegmentDictionary<String> segments = new SegmentDictionary<>();
+
+    /**
+     * Exclusive populations already worked out, by location index.
+     * Entries are cleared whenever the location's population or direct children change.
+     */
+    private AtomicReferenceArray<Population<String>> exclusivePopulations = new AtomicReferenceArray<>(16);
+
+    /**
+     * The POI groups in the region, by location index (null if there are none).
+     */
+    private List<List<POIGroup>> poiGroups = new ArrayList<>();
+
+    /**
+     * The locations with each location attribute value.
+     */
+    private AttributeIndex locationAttributes = new AttributeIndex();
+
+    /**
+     * The locations whose population has each population attribute value.
+     */
+    private AttributeIndex populationAttributes = new AttributeIndex();
+
+    /**
+     * True if the dataset can no longer be modified.
+     */
+    private boolean frozen = false;
+
+    /**
+     * @return
+     *  An immutable snapshot of this dataset, with frozen copies of its locations, areas and populations, and with
+     *  its hierarchy index and exclusive populations already worked out. Returns this instance if it is already
+     *  frozen.
+     * @apiNote
+     *  This dataset can continue to be changed without affecting the snapshot. The only modifiable thing they
+     *  share is the segment dictionary, so that segment indices mean the same in both. That is safe: the
+     *  dictionary is thread-safe and append-only, so segments added later never change the index of a segment
+     *  the snapshot uses.
+     *  Once safely published (e.g. through a final field, or before starting the threads that use it), a single
+     *  snapshot can be queried by any number of threads at once, e.g. one per replication.
+     * @implNote
+     *  The snapshot is held compactly: its per-location data are in arrays of exactly one entry per location,
+     *  location IDs are looked up in a flat hash table, and the hierarchy is a single array of children (plus
+     *  offsets) rather than one growable array per location. The hierarchy index, which never changes once
+     *  built, is shared with this dataset.
+     */
+    @SuppressWarnings("unchecked")
+    public RegionDataset freeze() {
+        if (frozen) {
+            return this;
+        }
+        RegionDataset result = new RegionDataset();
+        int count = locations.size();
+
+        // Copy the per-location data.
+        Location[] frozenLocations = new Location[count];
+        GISArea[] frozenAreas = new GISArea[count];
+        List<POIGroup>[] frozenGroups = new List[count];
+        for (int i = 0; i < count; i += 1) {
+            frozenLocations[i] = locations.get(i).freeze();
+            result.locationAttributes.addAll(i, frozenLocations[i].attributes());
+            frozenAreas[i] = areas.get(i) == null ? null : areas.get(i).freeze();
+            frozenGroups[i] = poiGroups.get(i) == null ? null : Collections.unmodifiableList(new ArrayList<>(poiGroups.get(i)));
+        }
+        result.locations = Arrays.asList(frozenLocations);
+        result.areas = Arrays.asList(frozenAreas);
+        result.poiGroups = Arrays.asList(frozenGroups);
+        result.populations = Arrays.asList(new Population[count]);
+        for (int i = 0; i < count; i += 1) {
+            if (populations.get(i) != null) {
+                result.putPopulation(i, populations.get(i).freeze());
+            }
+        }
+        result.segments = segments;
+        result.indices = null;
+        result.frozenIndices = new LocationIdIndex(frozenLocations);
+
+        // Copy the hierarchy.
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i += 1) {
+            starts[i + 1] = starts[i] + childCounts[i];
+        }
+        int[] list = new int[starts[count]];
+        for (int i = 0; i < count; i += 1) {
+            if (childCounts[i] > 0) {
+                System.arraycopy(children[i], 0, list, starts[i], childCounts[i]);
+            }
+        }
+        result.childStarts = starts;
+        result.childList = list;
+        result.parentCounts = Arrays.copyOf(parentCounts, count);
+        result.children = null;
+        result.childCounts = null;
+        result.parents = null;
+        result.visited = null;
+
+        // Work out everything that would otherwise be worked out lazily.
+        result.hierarchyIndex = getHierarchyIndex();
+        result.exclusivePopulations = new AtomicReferenceArray<>(count);
+        result.precomputeExclusivePopulations();
+        result.frozen = true;
+        return result;
+    }
+
+    /**
+     *
+     * @return
+     *  True, if the dataset can no longer be modified.
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void assertNotFrozen() {
+        precondition("Region dataset is frozen and cannot be modified.", !frozen);
+    }
 
     /**
      * Adds a location to the dataset.
      *
      * @param location
      * @pre location must not be in the dataset
+     * @pre dataset is not frozen
      * @pre location not null
+     * @apiNote
+     *  The dataset follows later changes to the location's attributes to keep its attribute index up to date, so a
+     *  location should only be added to one dataset.
      */
     public void addLocation(@NonNull Location location) {
-        Location existingEntry = locations.put(location.getId(), location);
-        hierarchy.addVertex(getLocation(location.getId()));
-        directSublocations.put(location, new HashSet<>());
+        assertNotFrozen();
+        Integer existingEntry = indices.get(location.getId());
 
         // Sanity check.
         ensureThat("Location must be unique in the dataset but ID " + location.getId() + " was found multiple times.", existingEntry == null);
-        postcondition("Vertex must be recorded.", hierarchy.containsVertex(getLocation(location.getId())));
+
+        // Record.
+        int index = locations.size();
+        indices.put(location.getId(), index);
+        locations.add(location);
+        location.setAttributeListener((name, oldValue, newValue) -> locationAttributes.update(index, name, oldValue, newValue));
+        locationAttributes.addAll(index, location.attributes());
+        areas.add(null);
+        populations.add(null);
+        poiGroups.add(null);
+        if (index == exclusivePopulations.length()) {
+            int capacity = index * 2;
+            AtomicReferenceArray<Population<String>> grown = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < index; i += 1) {
+                grown.set(i, exclusivePopulations.get(i));
+            }
+            exclusivePopulations = grown;
+            children = Arrays.copyOf(children, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            parentCounts = Arrays.copyOf(parentCounts, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+        }
+        hierarchyIndex = null;
+        postcondition("Location must be recorded.", locations.get(index) == location);
+    }
+
+    /**
+     * Records the population for the location, following its attribute changes.
+     */
+    private void putPopulation(int index, @NonNull Population<String> population) {
+        populations.set(index, population);
+        population.setAttributeListener((name, oldValue, newValue) -> populationAttributes.update(index, name, oldValue, newValue));
+        populationAttributes.addAll(index, population.attributes());
+    }
+
+    /**
+     * @return The locations whose attribute has exactly the given value, e.g. ("Zoning", "Residential").
+     * @implNote
+     *  Looked up in an index kept up to date as attributes are set, so the cost does not depend on the number of
+     *  locations in the dataset without the value.
+     */
+    public List<Location> getLocationsWithAttribute(@NonNull String name, @NonNull String value) {
+        return toLocations(locationAttributes.withValue(name, value));
+    }
+
+    /**
+     * @return The locations whose attribute is true according to {@link HasAttributes#getBoolean(String)}.
+     * @see #getLocationsWithAttribute(String, String)
+     */
+    public List<Location> getLocationsWhere(@NonNull String name) {
+        return toLocations(locationAttributes.whereTrue(name));
+    }
+
+    /**
+     * @return The locations whose attribute is a number in [minInclusive, maxInclusive].
+     * @see #getLocationsWithAttribute(String, String)
+     */
+    public List<Location> getLocationsWithAttributeBetween(@NonNull String name, double minInclusive, double maxInclusive) {
+        return toLocations(locationAttributes.between(name, minInclusive, maxInclusive));
+    }
+
+    /**
+     * @return The indices of the locations whose attribute has exactly the given value. A new bit set.
+     * @see #getLocationsWithAttribute(String, String)
+     */
+    public BitSet getLocationIndicesWithAttribute(@NonNull String name, @NonNull String value) {
+        return locationAttributes.withValue(name, value);
+    }
+
+    /**
+     * @return The indices of the locations whose attribute is true. A new bit set.
+     * @see #getLocationsWhere(String)
+     */
+    public BitSet getLocationIndicesWhere(@NonNull String name) {
+        return locationAttributes.whereTrue(name);
+    }
+
+    /**
+     * @return The indices of the locations whose attribute is a number in [minInclusive, maxInclusive].
+     *  A new bit set.
+     * @see #getLocationsWithAttributeBetween(String, double, double)
+     */
+    public BitSet getLocationIndicesWithAttributeBetween(@NonNull String name, double minInclusive, double maxInclusive) {
+        return locationAttributes.between(name, minInclusive, maxInclusive);
+    }
+
+    /**
+     * @return The locations whose population's attribute has exactly the given value.
+     * @see #getLocationsWithAttribute(String, String)
+     */
+    public List<Location> getLocationsWithPopulationAttribute(@NonNull String name, @NonNull String value) {
+        return toLocations(populationAttributes.withValue(name, value));
+    }
+
+    /**
+     * @return The locations whose population's attribute is true, e.g. "Is Rural".
+     * @see #getLocationsWhere(String)
+     */
+    public List<Location> getLocationsWherePopulation(@NonNull String name) {
+        return toLocations(populationAttributes.whereTrue(name));
+    }
+
+    /**
+     * @return The locations whose population's attribute is a number in [minInclusive, maxInclusive].
+     * @see #getLocationsWithAttributeBetween(String, double, double)
+     */
+    public List<Location> getLocationsWithPopulationAttributeBetween(@NonNull String name, double minInclusive, double maxInclusive) {
+        return toLocations(populationAttributes.between(name, minInclusive, maxInclusive));
+    }
+
+    private List<Location> toLocations(@NonNull BitSet indices) {
+        List<Location> result = new ArrayList<>(indices.cardinality());
+        for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+            result.add(locations.get(i));
+        }
+        return result;
     }
 
     /**
@@ -73,16 +350,45 @@ public class RegionDataset {
      * @pre location with ID exists in dataset
      */
     public Location getLocation(@NonNull String id) {
+        return locations.get(getIndex(id));
+    }
 
-        // Sanity check.
-        assertLocationExists(id);
+    /**
+     * @param index
+     * @return The location with the given index.
+     * @pre 0 <= index < number of locations
+     */
+    public Location getLocation(int index) {
+        return locations.get(index);
+    }
+
+    /**
+     * @param id
+     * @return The dense index (0, 1, 2, ...) of the location with the given ID, in the order locations were added.
+     * @pre location with ID exists in dataset
+     */
+    public int getIndex(@NonNull String id) {
+        int index = indexOf(id);
+        precondition(() -> "Location " + id + " must be in the dataset.", index >= 0);
+        return index;
+    }
 
-        // Return.
-        return locations.get(id);
+    /**
+     * @return The index of the location with the given ID, or -1 if there is none.
+     */
+    private int indexOf(String id) {
+        if (frozenIndices != null) {
+            return frozenIndices.indexOf(id);
+        }
+        Integer index = indices.get(id);
+        return index == null ? -1 : index;
     }
 
-    private void assertLocationExists(@NonNull String id) {
-        precondition(() -> "Location " + id + " must be in the dataset.", hasLocation(id));
+    /**
+     * @return The number of locations in the dataset. Location indices run from 0 up to (but not including) this.
+     */
+    public int getLocationCount() {
+        return locations.size();
     }
 
     /**
@@ -93,27 +399,240 @@ public class RegionDataset {
      * @pre parent and child known to dataset
      * @pre parent is not the child
      * @pre parent does not already have this as a direct child
-     * @post dataset must remain a directed acyclic graph
+     * @pre the link would not create a cycle
+     * @pre dataset is not frozen
+     * @implNote
+     *  Checks for cycles by searching the child's sublocations for the parent, which is quick when building the
+     *  hierarchy from the top down. Use {@link #addChildren(String[], String[])} to add many links at once.
      */
     public void addChild(String parentId, String childId) {
         // Sanity check.
-        precondition(() -> "Parent location " + parentId + " not contained in dataset.", hasLocation(parentId));
-        precondition(() -> "Child location " + childId + " not contained in dataset.", hasLocation(childId));
-        precondition(() -> "Child location " + childId + " and parent " + parentId + " are the same", !parentId.equals(childId));
-        precondition(() -> "Child location " + childId + " already belongs to parent " + parentId, !directSublocations.get(getLocation(parentId)).contains(getLocation(childId)));
+        assertNotFrozen();
+        int parent = getIndex(parentId);
+        int child = getIndex(childId);
+        assertCanLink(parent, child);
+        precondition(
+                () -> "Adding " + childId + " as a child of " + parentId + " would create a cycle.",
+                !reaches(child, parent));
 
         // Add the edge.
-        hierarchy.addEdge(getLocation(parentId), getLocation(childId));
-        directSublocations.get(getLocation(parentId)).add(getLocation(childId));
-        postcondition("Parent vertex must still be recorded.", hierarchy.containsVertex(getLocation(parentId)));
-        postcondition("Child vertex must still be recorded.", hierarchy.containsVertex(getLocation(childId)));
+        link(parent, child);
+    }
+
+    /**
+     * Links many locations as children and parents at once.
+     *
+     * @param parentIds The parent of each link.
+     * @param childIds The child of each link, in the same order as the parents.
+     * @pre parentIds and childIds have the same length
+     * @pre parents and children known to dataset
+     * @pre no parent is its own child
+     * @pre no link is already in the dataset or repeated
+     * @pre the links would not create a cycle
+     * @pre dataset is not frozen
+     * @post if a precondition fails, none of the links are added
+     * @implNote
+     *  Validates the whole hierarchy with a single topological sort and a single pass over each touched parent's
+     *  children once every link is added, so the cost is linear in the number of locations and links. If there is a cycle, the error names the locations on it.
+     */
+    public void addChildren(@NonNull String[] parentIds, @NonNull String[] childIds) {
+        assertNotFrozen();
+        precondition("Each link needs one parent and one child.", parentIds.length == childIds.length);
+        int[] added = new int[2 * parentIds.length];
+        int count = 0;
+        try {
+            // Add the edges.
+            for (int i = 0; i < parentIds.length; i += 1) {
+                int parent = getIndex(parentIds[i]);
+                int child = getIndex(childIds[i]);
+                precondition(
+                        () -> "Child location " + locations.get(child).getId() + " and parent " + locations.get(parent).getId() + " are the same",
+                        parent != child);
+                link(parent, child);
+                added[count++] = parent;
+                added[count++] = child;
+            }
+
+            // Sanity check.
+            BitSet checked = new BitSet(locations.size());
+            for (int i = 0; i < count; i += 2) {
+                if (!checked.get(added[i])) {
+                    checked.set(added[i]);
+                    assertNoRepeatedChildren(added[i]);
+                }
+            }
+            List<Location> cycle = findCycle();
+            precondition(
+                    () -> "Location hierarchy must be acyclic but contains the cycle " + cycle.stream()
+                            .map(Location::getId)
+                            .collect(Collectors.joining(" -> ")),
+                    cycle.isEmpty());
+        }
+        catch (RuntimeException e) {
+            // Undo, newest first, so each link is the last in its lists.
+            for (int i = count - 2; i >= 0; i -= 2) {
+                unlink(added[i], added[i + 1]);
+            }
+            throw e;
+        }
+    }
+
+    private void assertCanLink(int parent, int child) {
+        precondition(
+                () -> "Child location " + locations.get(child).getId() + " and parent " + locations.get(parent).getId() + " are the same",
+                parent != child);
+        precondition(
+                () -> "Child location " + locations.get(child).getId() + " already belongs to parent " + locations.get(parent).getId(),
+                !hasChild(parent, child));
+    }
+
+    /**
+     * Checks that the parent has no child twice, in time linear in its number of children.
+     */
+    private void assertNoRepeatedChildren(int parent) {
+        visit += 1;
+        for (int k = 0; k < childCounts[parent]; k += 1) {
+            int child = children[parent][k];
+            precondition(
+                    () -> "Child location " + locations.get(child).getId() + " already belongs to parent " + locations.get(parent).getId(),
+                    visited[child] != visit);
+            visited[child] = visit;
+        }
+    }
+
+    /**
+     * @return
+     *  True, if the child is a direct sublocation of the parent.
+     */
+    private boolean hasChild(int parent, int child) {
+        for (int k = 0; k < childCounts[parent]; k += 1) {
+            if (children[parent][k] == child) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void link(int parent, int child) {
+        children[parent] = append(children[parent], childCounts[parent]++, child);
+        parents[child] = append(parents[child], parentCounts[child]++, parent);
+        exclusivePopulations.set(parent, null);
+        hierarchyIndex = null;
+    }
+
+    /**
+     * Removes the most recently added link from the parent to the child.
+     */
+    private void unlink(int parent, int child) {
+        childCounts[parent] -= 1;
+        parentCounts[child] -= 1;
+        exclusivePopulations.set(parent, null);
+        hierarchyIndex = null;
+    }
+
+    private static int[] append(int[] list, int size, int value) {
+        if (list == null) {
+            list = new int[2];
+        }
+        else if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    /**
+     * @return True, if the target is the start or one of its (indirect or direct) sublocations.
+     */
+    private boolean reaches(int start, int target) {
+        visit += 1;
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = start;
+        visited[start] = visit;
+        while (size > 0) {
+            int at = stack[--size];
+            if (at == target) {
+                return true;
+            }
+            for (int k = 0; k < childCounts[at]; k += 1) {
+                int next = children[at][k];
+                if (visited[next] != visit) {
+                    visited[next] = visit;
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                    }
+                    stack[size++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The locations on a cycle in the hierarchy, in parent-to-child order with the first repeated at the
+     *  end, or an empty list if there is none.
+     * @implNote
+     *  A topological sort (Kahn's algorithm) removes every location not on or below a cycle. Each location left has
+     *  a parent that is also left, so following parents from any of them must come back around.
+     */
+    private List<Location> findCycle() {
+        int n = locations.size();
+        int[] remainingParents = Arrays.copyOf(parentCounts, n);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (remainingParents[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int at = queue[head++];
+            for (int k = 0; k < childCounts[at]; k += 1) {
+                int next = children[at][k];
+                remainingParents[next] -= 1;
+                if (remainingParents[next] == 0) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (tail == n) {
+            return Collections.emptyList();
+        }
+
+        // Walk up through remaining parents until a location repeats.
+        int at = 0;
+        while (remainingParents[at] == 0) {
+            at += 1;
+        }
+        visit += 1;
+        List<Integer> path = new ArrayList<>();
+        while (visited[at] != visit) {
+            visited[at] = visit;
+            path.add(at);
+            int next = -1;
+            for (int k = 0; k < parentCounts[at] && next < 0; k += 1) {
+                if (remainingParents[parents[at][k]] > 0) {
+                    next = parents[at][k];
+                }
+            }
+            at = next;
+        }
+        List<Location> cycle = new ArrayList<>();
+        cycle.add(locations.get(at));
+        for (int i = path.size() - 1; path.get(i) != at; i -= 1) {
+            cycle.add(locations.get(path.get(i)));
+        }
+        cycle.add(locations.get(at));
+        return cycle;
     }
 
     /**
-     * @return The locations in the dataset.
+     * @return The locations in the dataset, in index order.
      */
     public Collection<Location> getLocations() {
-        return locations.values();
+        return Collections.unmodifiableList(locations);
     }
 
     /**
@@ -122,24 +641,27 @@ public class RegionDataset {
      * @param gisArea
      * @pre gisArea must belong to a location in the dataset.
      * @pre location must not already have a {@link GISArea}
+     * @pre dataset is not frozen
      */
     public void addGISArea(@NonNull GISArea gisArea) {
         // Sanity check.
-        precondition(() -> "GIS Area " + gisArea + "must belong to a location.", hasLocation(gisArea.getLocationId()));
-        precondition(() -> "Location " + locations.get(gisArea.getLocationId()) + " was given more than one location.", !areas.containsKey(gisArea.getLocationId()));
+        assertNotFrozen();
+        int index = indexOf(gisArea.getLocationId());
+        precondition(() -> "GIS Area " + gisArea + "must belong to a location.", index >= 0);
+        precondition(() -> "Location " + locations.get(index) + " was given more than one location.", areas.get(index) == null);
 
         // Record.
-        areas.put(gisArea.getLocationId(), gisArea);
+        areas.set(index, gisArea);
     }
 
     /**
      * @return Any locations without a {@link GISArea}
      */
     public Collection<Location> getLocationsWithoutGISAreas() {
-        return locations
-                .values()
-                .stream()
-                .filter(l -> !areas.containsKey(l.getId()))
+        return IntStream
+                .range(0, locations.size())
+                .filter(i -> areas.get(i) == null)
+                .mapToObj(locations::get)
                 .collect(Collectors.toList());
     }
 
@@ -148,7 +670,7 @@ public class RegionDataset {
      * @return True if the dataset has a location with the given ID.
      */
     public boolean hasLocation(@NonNull String id) {
-        return locations.containsKey(id);
+        return indexOf(id) >= 0;
     }
 
     /**
@@ -156,15 +678,150 @@ public class RegionDataset {
      * @pre location with given ID in dataset.
      */
     public Collection<Location> getAllSubLocations(@NonNull String id) {
-        return new HashSet<>(hierarchy.getDescendants(getLocation(id)));
+        Set<Location> result = new HashSet<>();
+        forEachSubLocation(id, result::add);
+        return result;
+    }
+
+    /**
+     * Calls the action once for each (indirect and direct) sublocation of the given location.
+     *
+     * @pre location with given ID in dataset.
+     */
+    public void forEachSubLocation(@NonNull String id, @NonNull Consumer<Location> action) {
+        forEachSubLocation(getIndex(id), (int i) -> action.accept(locations.get(i)));
+    }
+
+    /**
+     * Calls the action with the index of each (indirect and direct) sublocation of the given location.
+     *
+     * @implNote
+     *  Allocates nothing once the hierarchy has been indexed.
+     * @pre 0 <= index < number of locations
+     */
+    public void forEachSubLocation(int index, @NonNull IntConsumer action) {
+        getHierarchyIndex().forEachUnder(index, action);
     }
 
     /**
-     * @return All (direct) sublocations for the given location.
+     * Calls the action once for each location the given location is (indirectly or directly) a sublocation of.
+     *
+     * @pre location with given ID in dataset.
+     */
+    public void forEachParentLocation(@NonNull String id, @NonNull Consumer<Location> action) {
+        forEachParentLocation(getIndex(id), (int i) -> action.accept(locations.get(i)));
+    }
+
+    /**
+     * Calls the action with the index of each location the given location is (indirectly or directly) a
+     * sublocation of.
+     *
+     * @implNote
+     *  O(depth) for locations with a single parent chain.
+     * @pre 0 <= index < number of locations
+     */
+    public void forEachParentLocation(int index, @NonNull IntConsumer action) {
+        getHierarchyIndex().forEachAbove(index, action);
+    }
+
+    /**
+     * @return True, if the location is an (indirect or direct) sublocation of the parent.
+     *  A location is not a sublocation of itself.
+     * @pre locations with given IDs in dataset.
+     */
+    public boolean isSubLocation(@NonNull String id, @NonNull String parentId) {
+        return isSubLocation(getIndex(id), getIndex(parentId));
+    }
+
+    /**
+     * @return True, if the location is an (indirect or direct) sublocation of the parent.
+     *  A location is not a sublocation of itself.
+     * @implNote
+     *  O(1) for locations with a single parent chain.
+     * @pre both indices in [0, number of locations)
+     */
+    public boolean isSubLocation(int index, int parentIndex) {
+        return getHierarchyIndex().isUnder(index, parentIndex);
+    }
+
+    /**
+     * @return The hierarchy index, building it if the hierarchy has changed since it was last built.
+     */
+    private HierarchyIndex getHierarchyIndex() {
+        HierarchyIndex index = hierarchyIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = hierarchyIndex;
+                if (index == null) {
+                    int[][] direct = new int[locations.size()][];
+                    for (int i = 0; i < direct.length; i += 1) {
+                        direct[i] = children[i] == null ? new int[0] : Arrays.copyOf(children[i], childCounts[i]);
+                    }
+                    index = new HierarchyIndex(direct);
+                    hierarchyIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return All (direct) sublocations for the given location, in the order they were linked. A new list.
      * @pre location with given ID in dataset.
      */
     public Collection<Location> getDirectSubLocations(@NonNull String id) {
-        return new HashSet<>(hierarchy.getDescendants(getLocation(id)));
+        return getDirectSubLocations(getIndex(id));
+    }
+
+    /**
+     * @return All (direct) sublocations for the given location, in the order they were linked. A new list.
+     * @pre 0 <= index < number of locations
+     */
+    public Collection<Location> getDirectSubLocations(int index) {
+        List<Location> result = new ArrayList<>(childCount(index));
+        for (int k = 0; k < childCount(index); k += 1) {
+            result.add(locations.get(childAt(index, k)));
+        }
+        return result;
+    }
+
+    /**
+     * Calls the action with the index of each direct sublocation of the given location.
+     *
+     * @implNote
+     *  Allocates nothing.
+     * @pre 0 <= index < number of locations
+     */
+    public void forEachDirectSubLocation(int index, @NonNull IntConsumer action) {
+        for (int k = 0; k < childCount(index); k += 1) {
+            action.accept(childAt(index, k));
+        }
+    }
+
+    /**
+     * @return The number of direct sublocations of the location.
+     */
+    private int childCount(int index) {
+        return childList == null ? childCounts[index] : childStarts[index + 1] - childStarts[index];
+    }
+
+    /**
+     * @return The index of the location's kth direct sublocation.
+     * @pre 0 <= k < childCount(index)
+     */
+    private int childAt(int index, int k) {
+        return childList == null ? children[index][k] : childList[childStarts[index] + k];
+    }
+
+    /**
+     * @return All locations that are not a sublocation of any other location.
+     */
+    public Collection<Location> getRootLocations() {
+        return IntStream
+                .range(0, locations.size())
+                .filter(i -> parentCounts[i] == 0)
+                .mapToObj(locations::get)
+                .collect(Collectors.toList());
     }
     /**
      *
@@ -174,8 +831,22 @@ public class RegionDataset {
      * @pre location has a GIS area set
      */
     public GISArea getArea(@NonNull String id) {
-        precondition(() -> "Location must have an associated GIS location: " + id, areas.containsKey(id));
-        return areas.get(id);
+        int index = indexOf(id);
+        precondition(() -> "Location must have an associated GIS location: " + id, index >= 0 && areas.get(index) != null);
+        return areas.get(index);
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *  The GIS area associated with the location.
+     * @pre location has a GIS area set
+     */
+    public GISArea getArea(int index) {
+        GISArea area = areas.get(index);
+        precondition(() -> "Location must have an associated GIS location: " + locations.get(index), area != null);
+        return area;
     }
 
     /**
@@ -184,7 +855,7 @@ public class RegionDataset {
      *  The GIS areas in the region.
      */
     public Collection<GISArea> getAreas() {
-        return areas.values();
+        return areas.stream().filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     /**
@@ -199,19 +870,92 @@ public class RegionDataset {
      * @pre 0 <= startAge <= endAge
      */
     public int getTotalPopulationSize(String locationId, int startAgeInclusive, int endAgeExclusive) {
+        return getTotalPopulationSize(getIndex(locationId), startAgeInclusive, endAgeExclusive);
+    }
+
+    /**
+     * @see #getTotalPopulationSize(String, int, int)
+     * @pre 0 <= index < number of locations
+     * @pre 0 <= startAge <= endAge
+     */
+    public int getTotalPopulationSize(int index, int startAgeInclusive, int endAgeExclusive) {
         // Sanity check
-        assertLocationExists(locationId);
         precondition("Start age must be non-negative", startAgeInclusive >= 0);
         precondition("End age must be at least the start age.", startAgeInclusive <= endAgeExclusive);
 
         // Return the population size.
-        if (populations.containsKey(locationId)) {
-            return populations.get(locationId).getCount(startAgeInclusive, endAgeExclusive);
+        Population<String> population = populations.get(index);
+        if (population != null) {
+            return population.getCount(startAgeInclusive, endAgeExclusive);
         }
         else {
             return 0;
         }
     }
+
+    /**
+     * @param locationIds The locations, one per row.
+     * @param edges The age band edges, e.g. {0, 5, 18, 65, 120} for 0-4, 5-17, 18-64 and 65-119.
+     * @return
+     *  The number of people in each location (rows, in the order given) in each age band (columns), rounded down,
+     *  as if {@link #getTotalPopulationSize(String, int, int)} were called for each. Rows of locations without a
+     *  population are zero. This number INCLUDES people in lower levels of the hierarchy.
+     * @implNote
+     *  Rows are computed in parallel, each in a single sweep over the location's age bins.
+     * @pre locations are known
+     * @pre edges.length >= 2
+     * @pre 0 <= edges[0] and edges are strictly increasing
+     */
+    public int[][] getTotalPopulationMatrix(@NonNull List<String> locationIds, @NonNull int[] edges) {
+        return getTotalPopulationMatrix(toIndices(locationIds), edges);
+    }
+
+    /**
+     * @see #getTotalPopulationMatrix(List, int[])
+     * @pre 0 <= indices < number of locations
+     */
+    public int[][] getTotalPopulationMatrix(@NonNull int[] indices, @NonNull int[] edges) {
+        Population.assertValidEdges(edges);
+        return populationMatrix(indices, edges, population -> population.getCounts(edges));
+    }
+
+    /**
+     * @return
+     *  As {@link #getTotalPopulationMatrix(List, int[])}, counting only people in the given segment.
+     * @pre locations are known
+     * @pre edges.length >= 2
+     * @pre 0 <= edges[0] and edges are strictly increasing
+     */
+    public int[][] getTotalPopulationMatrix(@NonNull List<String> locationIds, @NonNull String segment, @NonNull int[] edges) {
+        return getTotalPopulationMatrix(toIndices(locationIds), segment, edges);
+    }
+
+    /**
+     * @see #getTotalPopulationMatrix(List, String, int[])
+     * @pre 0 <= indices < number of locations
+     */
+    public int[][] getTotalPopulationMatrix(@NonNull int[] indices, @NonNull String segment, @NonNull int[] edges) {
+        Population.assertValidEdges(edges);
+        return populationMatrix(indices, edges, population -> population.getCounts(segment, edges));
+    }
+
+    private int[][] populationMatrix(int[] indices, int[] edges, Function<Population<String>, int[]> row) {
+        int[][] result = new int[indices.length][];
+        IntStream.range(0, indices.length).parallel().forEach(i -> {
+            Population<String> population = populations.get(indices[i]);
+            result[i] = population == null ? new int[edges.length - 1] : row.apply(population);
+        });
+        return result;
+    }
+
+    private int[] toIndices(@NonNull List<String> locationIds) {
+        int[] result = new int[locationIds.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = getIndex(locationIds.get(i));
+        }
+        return result;
+    }
+
     /**
      *
      * @param locationId
@@ -275,17 +1019,42 @@ public class RegionDataset {
      * @pre location is known
      * @pre 0 <= startAge <= endAge
      * @pre count >= 0
+     * @pre dataset is not frozen
      */
     public void setPopulation(String locationId, String segment, int startAgeInclusive, int endAgeExclusive, int count) {
         // Sanity check
-        assertLocationExists(locationId);
+        assertNotFrozen();
+        int index = getIndex(locationId);
         precondition("Start age must be non-negative.", startAgeInclusive >= 0);
         precondition("End age must be at least the start age.", startAgeInclusive <= endAgeExclusive);
         precondition("Count must be non-negative", count >= 0);
 
         // Set the population.
-        populations.computeIfAbsent(locationId, x -> new Population<>());
-        populations.get(locationId).put(segment, startAgeInclusive, endAgeExclusive, count);
+        if (populations.get(index) == null) {
+            putPopulation(index, new Population<>(segments));
+        }
+        populations.get(index).put(segment, startAgeInclusive, endAgeExclusive, count);
+
+        // The exclusive populations of this location and its direct parents depend on it.
+        exclusivePopulations.set(index, null);
+        for (int k = 0; k < parentCounts[index]; k += 1) {
+            exclusivePopulations.set(parents[index][k], null);
+        }
+    }
+
+    /**
+     * Works out the exclusive population of every location with a population, in parallel, so that later calls to
+     * {@link #getExclusivePopulation(String)} are lookups.
+     *
+     * @apiNote
+     *  Optional; exclusive populations are otherwise worked out (and remembered) the first time they are asked for.
+     */
+    public void precomputeExclusivePopulations() {
+        IntStream
+                .range(0, locations.size())
+                .parallel()
+                .filter(this::hasPopulation)
+                .forEach(this::getExclusivePopulation);
     }
 
     /**
@@ -300,37 +1069,52 @@ public class RegionDataset {
      *
      * @param location
      * @return
-     *  The population associated with the given location, EXCLUDING any sub-populations.
+     *  The population associated with the given location, EXCLUDING any sub-populations. Always an immutable
+     *  (frozen) population, never the one returned by {@link #getPopulation(String)}, even if the location has no
+     *  sub-populations.
      * @implNote
      *  Assumes that all direct children are entirely contained within this population.
      *  E.g. if A(100 youth, 100 elderly) contains B and C, B + C = (<= 100 youth, <= 100 elderly)
+     *  Results are remembered until {@link #setPopulation} or {@link #addChild(String, String)} changes them, so
+     *  repeated calls are a single lookup.
+     * @apiNote
+     *  Changes made directly to a population returned by {@link #getPopulation(String)} are not seen by
+     *  remembered results; use {@link #setPopulation} instead.
      * @pre location known
      * @pre location has a population set.
      */
     public Population<String> getExclusivePopulation(@NonNull String location) {
+        return getExclusivePopulation(getIndex(location));
+    }
+
+    /**
+     * @see #getExclusivePopulation(String)
+     * @pre 0 <= index < number of locations
+     * @pre location has a population set.
+     */
+    public Population<String> getExclusivePopulation(int index) {
         // Preconditions
-        assertLocationExists(location);
-        precondition(() -> location + " does not have a population set to it.", populations.containsKey(location));
+        Population<String> population = getPopulation(index);
 
-        // Remove all other populations that fall under the jurisdiction of the given population.
-        // First: if there are no subpopulations, just quit.
-        Set<String> childrenWithPopulations = hierarchy
-                .outgoingEdgesOf(getLocation(location))
-                .stream()
-                .map(edge -> hierarchy.getEdgeTarget(edge))
-                .filter(this::hasPopulation)
-                .map(Location::getId)
-                .collect(Collectors.toSet());
-        if (childrenWithPopulations.isEmpty()) {
-            return populations.get(location);
+        // Use the remembered result if there is one.
+        Population<String> cached = exclusivePopulations.get(index);
+        if (cached != null) {
+            return cached;
         }
-        // Otherwise, reduce down.
-        else {
-            return childrenWithPopulations
-                    .stream()
-                    .map(id -> populations.get(id))
-                    .reduce(populations.get(location), Population::excluding);
+
+        // Remove all other populations that fall under the jurisdiction of the given population.
+        // If there are no subpopulations, this is a frozen copy of the population itself.
+        List<Population<String>> childPopulations = new ArrayList<>(childCount(index));
+        for (int k = 0; k < childCount(index); k += 1) {
+            if (populations.get(childAt(index, k)) != null) {
+                childPopulations.add(populations.get(childAt(index, k)));
+            }
         }
+        Population<String> result = childPopulations.isEmpty()
+                ? population.freeze()
+                : population.excludingAll(childPopulations).freeze();
+        exclusivePopulations.set(index, result);
+        return result;
     }
 
     /**
@@ -342,10 +1126,18 @@ public class RegionDataset {
      * @pre location has a population set.
      */
     public Population<String> getPopulation(@NonNull String location) {
-        // Preconditions
-        assertLocationExists(location);
-        precondition(() -> location + " does not have a population set to it.", populations.containsKey(location));
-        return populations.get(location);
+        return getPopulation(getIndex(location));
+    }
+
+    /**
+     * @see #getPopulation(String)
+     * @pre 0 <= index < number of locations
+     * @pre location has a population set.
+     */
+    public Population<String> getPopulation(int index) {
+        Population<String> population = populations.get(index);
+        precondition(() -> locations.get(index).getId() + " does not have a population set to it.", population != null);
+        return population;
     }
 
     /**
@@ -362,7 +1154,8 @@ public class RegionDataset {
      *  True, if there is a population associated with the given location.
      */
     public boolean hasPopulation(@NonNull String locationId) {
-        return populations.containsKey(locationId);
+        int index = indexOf(locationId);
+        return index >= 0 && populations.get(index) != null;
     }
 
     /**
@@ -371,16 +1164,28 @@ public class RegionDataset {
      *  True, if there is a population associated with the given location.
      */
     public boolean hasPopulation(@NonNull Location location) {
-        return populations.containsKey(location.getId());
+        return hasPopulation(location.getId());
+    }
+
+    /**
+     *
+     * @return
+     *  True, if there is a population associated with the location with the given index.
+     */
+    public boolean hasPopulation(int index) {
+        return populations.get(index) != null;
     }
 
     public void addPOIGroup(@NonNull POIGroup group) {
         // Preconditions
-        assertLocationExists(group.getLocationId());
+        assertNotFrozen();
+        int index = getIndex(group.getLocationId());
 
         // Add.
-        poiGroups.computeIfAbsent(group.getLocationId(), x -> new LinkedList<>());
-        poiGroups.get(group.getLocationId()).add(group);
+        if (poiGroups.get(index) == null) {
+            poiGroups.set(index, new LinkedList<>());
+        }
+        poiGroups.get(index).add(group);
     }
 
     public List<POIGroup> getPOIGroups(@NonNull Location location) {
@@ -388,6 +1193,12 @@ public class RegionDataset {
     }
 
     public List<POIGroup> getPOIGroups(@NonNull String locationId) {
-        return poiGroups.getOrDefault(locationId, Collections.emptyList());
+        int index = indexOf(locationId);
+        return index < 0 ? Collections.emptyList() : getPOIGroups(index);
+    }
+
+    public List<POIGroup> getPOIGroups(int index) {
+        List<POIGroup> groups = poiGroups.get(index);
+        return groups == null ? Collections.emptyList() : groups;
     }
 }
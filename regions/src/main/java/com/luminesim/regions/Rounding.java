@@ -0,0 +1,53 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Rounds fractional numbers of people to whole people without losing or inventing anyone.
+ */
+public final class Rounding {
+
+    private Rounding() {
+    }
+
+    /**
+     * @return
+     *  The values rounded to whole numbers that add up to their rounded total: each is rounded down, then the
+     *  people left over go one each to the values with the largest fractional parts (the earliest, on ties).
+     * @pre values are non-negative
+     * @implNote
+     *  Works over primitives only: each fractional part is packed with its index into a long, and the longs are
+     *  sorted, so rounding is O(n log n) with no boxing. Fractional parts are compared to 31 bits.
+     */
+    public static int[] largestRemainder(@NonNull double[] values) {
+        int[] result = new int[values.length];
+        long[] keys = new long[values.length];
+        double total = 0;
+        long floors = 0;
+        for (int i = 0; i < values.length; i += 1) {
+            precondition("Values to round must be non-negative.", values[i] >= 0);
+            double floor = Math.floor(values[i]);
+            result[i] = (int) floor;
+            floors += result[i];
+            total += values[i];
+
+            // Larger fractions sort later, then earlier indices.
+            long fraction = (long) ((values[i] - floor) * (1L << 31));
+            keys[i] = (fraction << 32) | (Integer.MAX_VALUE - i);
+        }
+
+        // Give the people left over to the largest fractions.
+        long left = Math.min(Math.round(total) - floors, values.length);
+        if (left > 0) {
+            Arrays.sort(keys);
+            for (int k = 0; k < left; k += 1) {
+                result[Integer.MAX_VALUE - (int) keys[keys.length - 1 - k]] += 1;
+            }
+        }
+        return result;
+    }
+}
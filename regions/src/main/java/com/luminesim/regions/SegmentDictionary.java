@@ -0,0 +1,79 @@
+package com.luminesim.regions;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns population segments (e.g. "All", "Male", "Female") to dense integer indices.
+ * Populations sharing a dictionary share segment instances and can match segments by index rather than by hashing.
+ *
+ * @apiNote
+ *  Indices are assigned in order of first use and never change. Safe to use from many threads.
+ */
+public final class SegmentDictionary<SegmentType> {
+
+    /**
+     * The index of each segment.
+     */
+    private final Map<SegmentType, Integer> indices = new ConcurrentHashMap<>();
+
+    /**
+     * The segment at each index.
+     * @implNote
+     *  Replaced (never modified) when a segment is added, so readers never need to lock.
+     */
+    private volatile Object[] segments = new Object[0];
+
+    /**
+     * @return
+     *  The index of the segment, adding it to the dictionary if it is not already present.
+     */
+    public int intern(@NonNull SegmentType segment) {
+        Integer index = indices.get(segment);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = indices.get(segment);
+            if (index == null) {
+                index = segments.length;
+                Object[] grown = Arrays.copyOf(segments, index + 1);
+                grown[index] = segment;
+                // Publish the segment before its index so that anyone who sees the index can look it up.
+                segments = grown;
+                indices.put(segment, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return
+     *  The index of the segment, or -1 if it is not in the dictionary.
+     */
+    public int indexOf(@NonNull SegmentType segment) {
+        Integer index = indices.get(segment);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return
+     *  The segment with the given index.
+     * @pre 0 <= index < size()
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentType get(int index) {
+        return (SegmentType) segments[index];
+    }
+
+    /**
+     * @return
+     *  The number of segments in the dictionary.
+     */
+    public int size() {
+        return segments.length;
+    }
+}
@@ -8,9 +8,12 @@ import org.simpleflatmapper.csv.CsvParser;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.luminesim.qa.ContractUtilities.*;
 import static java.lang.String.*;
@@ -58,11 +61,17 @@ public class RegionDatasetReader {
                         row -> data.addLocation(new Location(row[0], row[1])));
 
         // Set up the hierarchy.
+        List<String> parentIds = new ArrayList<>();
+        List<String> childIds = new ArrayList<>();
         CsvParser
                 .mapTo(LocationHierarchy.class)
                 .forEach(
                         folder.toAbsolutePath().resolve(HierarchyFile).toFile(),
-                        pair -> data.addChild(pair.getParentId(), pair.getChildId()));
+                        link -> {
+                            parentIds.add(link.getParentId());
+                            childIds.add(link.getChildId());
+                        });
+        data.addChildren(parentIds.toArray(new String[0]), childIds.toArray(new String[0]));
 
         // Set up regions.
         Map<String, GISArea> areas = data
@@ -141,27 +150,17 @@ public class RegionDatasetReader {
                 );
 
         // Sanity check: all locations should contain the population of all descendants.
-        data.getLocations().stream().filter(data::hasPopulation).forEach(A -> {
-            Population<String> remaining = data.getPopulation(A.getId());
-            Set<Location> childrenWithPopulations = data
-                    .getDirectSubLocations(A.getId())
-                    .stream()
-                    .filter(data::hasPopulation)
-                    .collect(Collectors.toSet());
-            for (Location B : childrenWithPopulations) {
-                log.debug("Remaining: {}", remaining);
-                log.debug("Removing: {}: {}", B.getName(), data.getPopulation(B));
-                if (!remaining.entirelyContains(data.getPopulation(B))) {
-
-                    throw new IllegalStateException(String.format(
-                            "Location %s has too few people to support the nested populations in %s. " +
-                                    "It encountered a problem with population %s",
-                            A, childrenWithPopulations, B)
-                    );
-                }
-                remaining = remaining.excluding(data.getPopulation(B));
-            }
-        });
+        // Each location is checked independently, in parallel; only a failure is looked at in detail.
+        IntStream
+                .range(0, data.getLocationCount())
+                .parallel()
+                .filter(data::hasPopulation)
+                .filter(A -> !data.getPopulation(A).entirelyContainsAll(childPopulations(data, A)))
+                .findFirst()
+                .ifPresent(A -> {
+                    throw new IllegalStateException(describeUncontainedPopulation(data, A));
+                });
+        log.debug("Checked that all {} locations contain their nested populations.", data.getLocationCount());
 
         // Set up population attributes.
         CsvParser
@@ -217,4 +216,45 @@ public class RegionDatasetReader {
         // Done!
         return data;
     }
+
+    /**
+     * @return
+     *  The populations of the location's direct sublocations.
+     */
+    private static List<Population<String>> childPopulations(@NonNull RegionDataset data, int location) {
+        List<Population<String>> result = new ArrayList<>();
+        data.forEachDirectSubLocation(location, child -> {
+            if (data.hasPopulation(child)) {
+                result.add(data.getPopulation(child));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return
+     *  A description of the first of the location's direct sublocations whose population could not be removed from
+     *  what remained of the location's population.
+     */
+    private static String describeUncontainedPopulation(@NonNull RegionDataset data, int location) {
+        Location A = data.getLocation(location);
+        Set<Location> childrenWithPopulations = data
+                .getDirectSubLocations(location)
+                .stream()
+                .filter(data::hasPopulation)
+                .collect(Collectors.toSet());
+        Population<String> remaining = data.getPopulation(location);
+        Location culprit = null;
+        for (Location B : childrenWithPopulations) {
+            if (!remaining.entirelyContains(data.getPopulation(B))) {
+                culprit = B;
+                break;
+            }
+            remaining = remaining.excluding(data.getPopulation(B));
+        }
+        return String.format(
+                "Location %s has too few people to support the nested populations in %s. " +
+                        "It encountered a problem with population %s",
+                A, childrenWithPopulations, culprit);
+    }
 }
@@ -0,0 +1,22 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.Location;
+
+/**
+ * Receives synthesized individuals.
+ *
+ * @apiNote
+ *  Synthesis runs in parallel, so implementations must be safe to call from many threads at once.
+ * @see PopulationSynthesizer
+ */
+@FunctionalInterface
+public interface AgentSink {
+    /**
+     * Accepts a single synthesized individual.
+     *
+     * @param location The location the individual lives in.
+     * @param segment The individual's population segment.
+     * @param age The individual's age.
+     */
+    void accept(Location location, String segment, double age);
+}
@@ -0,0 +1,46 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.POIGroup.POIType;
+import lombok.NonNull;
+
+/**
+ * The setting in which two people are in contact.
+ */
+public enum ContactContext {
+    Household,
+    School,
+    Workplace,
+
+    /**
+     * Living in or attending a care facility, e.g. assisted living or a hospital.
+     */
+    Care;
+
+    private static final ContactContext[] values = values();
+
+    /**
+     * @return
+     *  The context in which attendees of the POI type meet.
+     */
+    public static ContactContext ofAttendance(@NonNull POIType type) {
+        switch (type) {
+            case PrimarySchool:
+            case SecondarySchool:
+            case TertiarySchool:
+                return School;
+            case AssistedLiving:
+            case Hospital:
+                return Care;
+            default:
+                return Workplace;
+        }
+    }
+
+    /**
+     * @return
+     *  The context with the given ordinal.
+     */
+    static ContactContext byOrdinal(int ordinal) {
+        return values[ordinal];
+    }
+}
@@ -0,0 +1,107 @@
+package com.luminesim.regions.synthesis;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Who is in contact with whom, and how, stored as compressed sparse rows: the contacts of person p are edges
+ * [{@link #getFirst(int)}, {@link #getEnd(int)}), each with a contact, a {@link ContactContext} and a weight.
+ * Every edge has a matching edge in the opposite direction. People in contact in several contexts have an edge
+ * per context.
+ *
+ * @apiNote
+ *  Immutable; safe to share between threads. People are identified by their rows in a {@link PersonTable}.
+ * @see ContactNetworkBuilder
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ContactNetwork {
+
+    /**
+     * The first edge of each person, plus the number of edges at the end.
+     */
+    private final int[] offsets;
+
+    /**
+     * The person at the other end of each edge.
+     */
+    private final int[] contacts;
+
+    /**
+     * The {@link ContactContext#ordinal()} of each edge.
+     */
+    private final byte[] contexts;
+
+    /**
+     * The weight of each edge.
+     */
+    private final float[] weights;
+
+    /**
+     * @return
+     *  The number of people.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return
+     *  The number of (directed) edges.
+     */
+    public int getEdgeCount() {
+        return contacts.length;
+    }
+
+    /**
+     * @return
+     *  The person's first edge.
+     */
+    public int getFirst(int person) {
+        return offsets[person];
+    }
+
+    /**
+     * @return
+     *  One past the person's last edge.
+     */
+    public int getEnd(int person) {
+        return offsets[person + 1];
+    }
+
+    /**
+     * @return
+     *  The person's number of edges.
+     */
+    public int getDegree(int person) {
+        return offsets[person + 1] - offsets[person];
+    }
+
+    /**
+     * @return
+     *  The person at the other end of the edge.
+     */
+    public int getContact(int edge) {
+        return contacts[edge];
+    }
+
+    /**
+     * @return
+     *  The context of the edge.
+     */
+    public ContactContext getContext(int edge) {
+        return ContactContext.byOrdinal(contexts[edge]);
+    }
+
+    /**
+     * @return
+     *  The weight of the edge.
+     */
+    public float getWeight(int edge) {
+        return weights[edge];
+    }
+
+    @Override
+    public String toString() {
+        return "ContactNetwork(size=" + size() + ", edges=" + getEdgeCount() + ")";
+    }
+}
@@ -0,0 +1,304 @@
+package com.luminesim.regions.synthesis;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Builds a {@link ContactNetwork} from group memberships, such as the POIs in a {@link PoiAssignment} or households.
+ * Members of small groups are all in contact with one another. Members of large groups are each in contact with
+ * a fixed number of randomly chosen members instead, with heavier weights so that each person's total contact
+ * weight within the group is unchanged.
+ *
+ * @apiNote
+ *  Example: {@code new ContactNetworkBuilder(people.size(), seed).addAttendance(assignment, pois, 1).build()}
+ * @implNote
+ *  Large groups are shuffled into a ring, and each member is in contact with the nearest members on either side.
+ *  Edges are counted per person first and then written straight into their final rows, with groups handled in
+ *  parallel. Each group shuffles with its own random stream, so the network depends only on the seed.
+ */
+public class ContactNetworkBuilder {
+
+    /**
+     * The number of people in the network.
+     */
+    @Getter
+    private final int size;
+
+    /**
+     * The seed from which every group's random stream is derived.
+     */
+    @Getter
+    private final long seed;
+
+    /**
+     * The largest group whose members are all in contact with one another.
+     */
+    @Getter
+    private final int maxCliqueSize;
+
+    /**
+     * The number of contacts on either side of each member of a larger group.
+     */
+    @Getter
+    private final int partnersPerSide;
+
+    /**
+     * The groups added so far.
+     */
+    private final List<Layer> layers = new ArrayList<>();
+
+    /**
+     * Creates a builder in which groups of up to 20 are fully connected and members of larger groups have
+     * 10 contacts each.
+     */
+    public ContactNetworkBuilder(int size, long seed) {
+        this(size, seed, 20, 5);
+    }
+
+    /**
+     * @pre size >= 0
+     * @pre partnersPerSide > 0
+     * @pre maxCliqueSize >= 2 * partnersPerSide, so larger groups never have more contacts per member than
+     *  a clique would
+     */
+    public ContactNetworkBuilder(int size, long seed, int maxCliqueSize, int partnersPerSide) {
+        precondition("Size must be non-negative.", size >= 0);
+        precondition("Partners per side must be positive.", partnersPerSide > 0);
+        precondition("Cliques must be at least as large as two partners per side.", maxCliqueSize >= 2 * partnersPerSide);
+        this.size = size;
+        this.seed = seed;
+        this.maxCliqueSize = maxCliqueSize;
+        this.partnersPerSide = partnersPerSide;
+    }
+
+    /**
+     * Adds a set of groups, in which each person is in at most one group.
+     *
+     * @param context The context in which group members meet.
+     * @param weight The weight of contact between two members of a fully connected group.
+     * @param groups The group of each person, or a negative number for none.
+     * @return
+     *  This instance.
+     * @pre groups.length == size
+     * @pre weight >= 0
+     */
+    public ContactNetworkBuilder add(@NonNull ContactContext context, double weight, @NonNull int[] groups) {
+        precondition("There must be a group for every person.", groups.length == size);
+        precondition("Weights must be non-negative.", weight >= 0);
+        layers.add(new Layer(context, weight, groups.clone(), null));
+        return this;
+    }
+
+    /**
+     * Adds contacts between people attending the same POI, in the context suited to each POI's type.
+     *
+     * @return
+     *  This instance.
+     * @pre assignment.size() == size
+     * @pre weight >= 0
+     */
+    public ContactNetworkBuilder addAttendance(@NonNull PoiAssignment assignment, @NonNull PoiTable pois, double weight) {
+        precondition("There must be an assignment for every person.", assignment.size() == size);
+        precondition("Weights must be non-negative.", weight >= 0);
+        int[] groups = new int[size];
+        Arrays.setAll(groups, assignment::getAttended);
+        byte[] contexts = new byte[pois.size()];
+        for (int poi = 0; poi < pois.size(); poi += 1) {
+            contexts[poi] = (byte) ContactContext.ofAttendance(pois.getType(poi)).ordinal();
+        }
+        layers.add(new Layer(ContactContext.School, weight, groups, contexts));
+        return this;
+    }
+
+    /**
+     * Adds contacts between people working at the same POI.
+     *
+     * @return
+     *  This instance.
+     * @pre assignment.size() == size
+     * @pre weight >= 0
+     */
+    public ContactNetworkBuilder addEmployment(@NonNull PoiAssignment assignment, double weight) {
+        precondition("There must be an assignment for every person.", assignment.size() == size);
+        precondition("Weights must be non-negative.", weight >= 0);
+        int[] groups = new int[size];
+        Arrays.setAll(groups, assignment::getEmployer);
+        layers.add(new Layer(ContactContext.Workplace, weight, groups, null));
+        return this;
+    }
+
+    /**
+     * Adds contacts between members of the same household.
+     *
+     * @return
+     *  This instance.
+     * @pre households.size() == size
+     * @pre weight >= 0
+     */
+    public ContactNetworkBuilder addHouseholds(@NonNull Households households, double weight) {
+        return add(ContactContext.Household, weight, households.toGroups());
+    }
+
+    /**
+     * @return
+     *  The network of every group added so far.
+     * @pre fewer than 2^31 edges in total
+     */
+    public ContactNetwork build() {
+        // Group members of every layer.
+        layers.parallelStream().forEach(Layer::index);
+
+        // Count.
+        int[] offsets = new int[size + 1];
+        for (Layer layer : layers) {
+            for (int g = 0; g + 1 < layer.groupOffsets.length; g += 1) {
+                int members = layer.groupOffsets[g + 1] - layer.groupOffsets[g];
+                int degree = degree(members);
+                for (int m = layer.groupOffsets[g]; m < layer.groupOffsets[g + 1]; m += 1) {
+                    offsets[layer.members[m] + 1] += degree;
+                }
+            }
+        }
+        long total = 0;
+        for (int p = 0; p < size; p += 1) {
+            total += offsets[p + 1];
+            precondition("Too many edges to build a network.", total < Integer.MAX_VALUE);
+            offsets[p + 1] = (int) total;
+        }
+
+        // Fill, one layer at a time so that each person's row is only written by their own group.
+        int[] contacts = new int[(int) total];
+        byte[] contexts = new byte[(int) total];
+        float[] weights = new float[(int) total];
+        int[] cursors = Arrays.copyOf(offsets, size);
+        for (int l = 0; l < layers.size(); l += 1) {
+            Layer layer = layers.get(l);
+            int index = l;
+            IntStream.range(0, layer.groupOffsets.length - 1).parallel().forEach(g -> {
+                int from = layer.groupOffsets[g];
+                int to = layer.groupOffsets[g + 1];
+                int members = to - from;
+                byte context = (byte) layer.contextOf(g).ordinal();
+                if (members <= maxCliqueSize) {
+                    float weight = (float) layer.weight;
+                    for (int i = from; i < to; i += 1) {
+                        int person = layer.members[i];
+                        for (int j = from; j < to; j += 1) {
+                            if (i != j) {
+                                int edge = cursors[person]++;
+                                contacts[edge] = layer.members[j];
+                                contexts[edge] = context;
+                                weights[edge] = weight;
+                            }
+                        }
+                    }
+                    return;
+                }
+                int[] ring = Arrays.copyOfRange(layer.members, from, to);
+                SplittableRandom rng = RandomStreams.forKey(seed, layer.context + "/" + index + "/" + g);
+                for (int i = members - 1; i > 0; i -= 1) {
+                    int j = rng.nextInt(i + 1);
+                    int swap = ring[i];
+                    ring[i] = ring[j];
+                    ring[j] = swap;
+                }
+                float weight = (float) (layer.weight * (members - 1) / (2.0 * partnersPerSide));
+                for (int i = 0; i < members; i += 1) {
+                    int person = ring[i];
+                    for (int k = 1; k <= partnersPerSide; k += 1) {
+                        int before = cursors[person]++;
+                        contacts[before] = ring[(i - k + members) % members];
+                        contexts[before] = context;
+                        weights[before] = weight;
+                        int after = cursors[person]++;
+                        contacts[after] = ring[(i + k) % members];
+                        contexts[after] = context;
+                        weights[after] = weight;
+                    }
+                }
+            });
+        }
+        return new ContactNetwork(offsets, contacts, contexts, weights);
+    }
+
+    /**
+     * @return
+     *  The number of contacts each member of a group of the given size has.
+     */
+    private int degree(int members) {
+        return members <= maxCliqueSize ? members - 1 : 2 * partnersPerSide;
+    }
+
+    /**
+     * A set of groups, in which each person is in at most one group.
+     */
+    private static final class Layer {
+        final ContactContext context;
+        final double weight;
+
+        /**
+         * The group of each person, or a negative number for none.
+         */
+        final int[] groups;
+
+        /**
+         * The context ordinal of each group, or null to use the layer's context for all.
+         */
+        final byte[] groupContexts;
+
+        /**
+         * The first member of each group, plus the number of members at the end.
+         */
+        int[] groupOffsets;
+
+        /**
+         * Members, by group.
+         */
+        int[] members;
+
+        Layer(ContactContext context, double weight, int[] groups, byte[] groupContexts) {
+            this.context = context;
+            this.weight = weight;
+            this.groups = groups;
+            this.groupContexts = groupContexts;
+        }
+
+        /**
+         * Lists each group's members with a counting sort.
+         */
+        void index() {
+            int groupCount = 0;
+            for (int group : groups) {
+                groupCount = Math.max(groupCount, group + 1);
+            }
+            groupOffsets = new int[groupCount + 1];
+            for (int group : groups) {
+                if (group >= 0) {
+                    groupOffsets[group + 1] += 1;
+                }
+            }
+            for (int g = 0; g < groupCount; g += 1) {
+                groupOffsets[g + 1] += groupOffsets[g];
+            }
+            members = new int[groupOffsets[groupCount]];
+            int[] cursors = Arrays.copyOf(groupOffsets, groupCount);
+            for (int p = 0; p < groups.length; p += 1) {
+                if (groups[p] >= 0) {
+                    members[cursors[groups[p]]++] = p;
+                }
+            }
+        }
+
+        ContactContext contextOf(int group) {
+            return groupContexts == null ? context : ContactContext.byOrdinal(groupContexts[group]);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.Rounding;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * An N-dimensional table of (possibly fractional) counts, e.g. people by age band x sex x household type.
+ *
+ * @apiNote
+ *  Cells are addressed either by their coordinates or by a flat index, where the last dimension varies fastest.
+ * @see IterativeProportionalFitter
+ */
+public class ContingencyTable {
+
+    /**
+     * The number of categories in each dimension.
+     */
+    private final int[] shape;
+
+    /**
+     * The distance between consecutive categories of each dimension in {@link #cells}.
+     */
+    private final int[] strides;
+
+    /**
+     * The counts, with the last dimension varying fastest.
+     */
+    private final double[] cells;
+
+    /**
+     * Creates a table of zeros.
+     *
+     * @param shape The number of categories in each dimension.
+     * @pre shape.length >= 1
+     * @pre every dimension has at least one category
+     */
+    public ContingencyTable(@NonNull int... shape) {
+        precondition("A table needs at least one dimension.", shape.length >= 1);
+        this.shape = shape.clone();
+        this.strides = new int[shape.length];
+        int size = 1;
+        for (int d = shape.length - 1; d >= 0; d -= 1) {
+            precondition("Every dimension needs at least one category.", shape[d] >= 1);
+            strides[d] = size;
+            size = Math.multiplyExact(size, shape[d]);
+        }
+        this.cells = new double[size];
+    }
+
+    /**
+     * @return
+     *  A table of the given shape with every cell set to the value, e.g. 1 for an uninformative IPF seed.
+     */
+    public static ContingencyTable filled(double value, @NonNull int... shape) {
+        ContingencyTable result = new ContingencyTable(shape);
+        Arrays.fill(result.cells, value);
+        return result;
+    }
+
+    /**
+     * @return
+     *  A copy of the table.
+     */
+    public ContingencyTable copy() {
+        ContingencyTable result = new ContingencyTable(shape);
+        System.arraycopy(cells, 0, result.cells, 0, cells.length);
+        return result;
+    }
+
+    /**
+     * @return
+     *  The number of dimensions.
+     */
+    public int getDimensions() {
+        return shape.length;
+    }
+
+    /**
+     * @return
+     *  The number of categories in the dimension.
+     */
+    public int getSize(int dimension) {
+        return shape[dimension];
+    }
+
+    /**
+     * @return
+     *  The number of cells.
+     */
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * @return
+     *  The count in the cell with the given coordinates.
+     */
+    public double get(@NonNull int... coordinates) {
+        return cells[indexOf(coordinates)];
+    }
+
+    /**
+     * Sets the count in the cell with the given coordinates.
+     */
+    public void set(double value, @NonNull int... coordinates) {
+        cells[indexOf(coordinates)] = value;
+    }
+
+    /**
+     * @return
+     *  The count in the cell with the given flat index.
+     */
+    public double getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Sets the count in the cell with the given flat index.
+     */
+    public void setCell(int index, double value) {
+        cells[index] = value;
+    }
+
+    /**
+     * @return
+     *  The flat index of the cell with the given coordinates.
+     * @pre one coordinate per dimension, each within its dimension
+     */
+    public int indexOf(@NonNull int... coordinates) {
+        precondition("Need one coordinate per dimension.", coordinates.length == shape.length);
+        int index = 0;
+        for (int d = 0; d < shape.length; d += 1) {
+            precondition("Coordinate out of range.", coordinates[d] >= 0 && coordinates[d] < shape[d]);
+            index += coordinates[d] * strides[d];
+        }
+        return index;
+    }
+
+    /**
+     * Writes the coordinates of the cell with the given flat index into the array.
+     *
+     * @pre out.length >= number of dimensions
+     */
+    public void coordinatesOf(int index, @NonNull int[] out) {
+        for (int d = 0; d < shape.length; d += 1) {
+            out[d] = index / strides[d];
+            index -= out[d] * strides[d];
+        }
+    }
+
+    /**
+     * @return
+     *  The sum of all cells.
+     */
+    public double total() {
+        double total = 0;
+        for (double cell : cells) {
+            total += cell;
+        }
+        return total;
+    }
+
+    /**
+     * @param dimensions The dimensions to keep, e.g. {0, 2}.
+     * @return
+     *  The sums of the cells over all other dimensions, with the last kept dimension varying fastest.
+     */
+    public double[] marginal(@NonNull int... dimensions) {
+        int[] mapping = marginalIndices(dimensions);
+        double[] result = new double[marginalSize(dimensions)];
+        for (int i = 0; i < cells.length; i += 1) {
+            result[mapping[i]] += cells[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return
+     *  The cells rounded to whole numbers whose total is the rounded total of the table, giving the leftover
+     *  people to the cells with the largest fractional parts.
+     * @pre cells are non-negative
+     * @apiNote
+     *  Useful for turning a fitted table into exact numbers of people to synthesize.
+     * @see Rounding#largestRemainder(double[])
+     */
+    public int[] integerize() {
+        return Rounding.largestRemainder(cells);
+    }
+
+    /**
+     * @return
+     *  The number of cells in the marginal over the given dimensions.
+     */
+    int marginalSize(@NonNull int[] dimensions) {
+        int size = 1;
+        for (int d : dimensions) {
+            precondition("Marginal dimension out of range.", d >= 0 && d < shape.length);
+            size *= shape[d];
+        }
+        return size;
+    }
+
+    /**
+     * @return
+     *  For each cell, the index of the marginal cell it contributes to.
+     */
+    int[] marginalIndices(@NonNull int[] dimensions) {
+        // The stride of each of our dimensions within the marginal (zero if not kept).
+        int[] marginalStrides = new int[shape.length];
+        int stride = 1;
+        for (int k = dimensions.length - 1; k >= 0; k -= 1) {
+            precondition("Marginal dimension out of range.", dimensions[k] >= 0 && dimensions[k] < shape.length);
+            precondition("Marginal dimensions must be distinct.", marginalStrides[dimensions[k]] == 0);
+            marginalStrides[dimensions[k]] = stride;
+            stride *= shape[dimensions[k]];
+        }
+
+        // Walk every cell, keeping an odometer of its coordinates.
+        int[] result = new int[cells.length];
+        int[] coordinates = new int[shape.length];
+        int index = 0;
+        for (int i = 0; i < cells.length; i += 1) {
+            result[i] = index;
+            for (int d = shape.length - 1; d >= 0; d -= 1) {
+                coordinates[d] += 1;
+                index += marginalStrides[d];
+                if (coordinates[d] < shape[d]) {
+                    break;
+                }
+                index -= marginalStrides[d] * shape[d];
+                coordinates[d] = 0;
+            }
+        }
+        return result;
+    }
+
+    double[] cells() {
+        return cells;
+    }
+
+    @Override
+    public String toString() {
+        return "ContingencyTable(shape=" + Arrays.toString(shape) + ", total=" + total() + ")";
+    }
+}
@@ -0,0 +1,399 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.AttributeKey;
+import com.luminesim.regions.Population;
+import com.luminesim.regions.RegionDataset;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Groups synthesized people into households, location by location:
+ * <ul>
+ *     <li>Residents of locations marked {@value #ASSISTED_LIVING} each live alone.</li>
+ *     <li>Adults are paired into couples of similar age. The number of couples is the location population's
+ *     {@value #PARTNERED_MEN} attribute when present, scaled to the share of the location's adults who are not in
+ *     any of its sublocations, otherwise a default share of adults. When the location has both a male and a female
+ *     segment, couples are one of each.</li>
+ *     <li>Unpartnered adults live alone.</li>
+ *     <li>Each child joins a random household whose youngest adult is a plausible parent by age, or, if there is
+ *     none, the household whose youngest adult is nearest to a plausible parent's age.</li>
+ * </ul>
+ *
+ * @apiNote
+ *  Example: {@code HouseholdFormer.standard(data, seed).build().form(people)}
+ * @implNote
+ *  Sorting by age is a counting sort over whole years, and parents are found by binary search over households
+ *  sorted the same way, so forming households is linear in the number of people (plus a log factor per child).
+ *  Locations are independent and handled in parallel, each with its own random stream.
+ */
+public class HouseholdFormer {
+
+    /**
+     * The location attribute marking assisted living facilities.
+     */
+    public static final String ASSISTED_LIVING = "IsAssistedLiving";
+
+    /**
+     * The population attribute holding the number of couples.
+     */
+    public static final String PARTNERED_MEN = "Number of Partnered Men";
+
+    private static final AttributeKey assistedLiving = AttributeKey.of(ASSISTED_LIVING);
+    private static final AttributeKey partneredMen = AttributeKey.of(PARTNERED_MEN);
+
+    /**
+     * The dataset the people are from.
+     */
+    @Getter
+    private final RegionDataset data;
+
+    /**
+     * The seed from which every location's random stream is derived.
+     */
+    @Getter
+    private final long seed;
+
+    /**
+     * The age at which people become adults.
+     */
+    @Getter
+    private final int adultAge;
+
+    /**
+     * The smallest age gap between a child and the youngest adult of their household.
+     */
+    @Getter
+    private final int minParentAgeGap;
+
+    /**
+     * The largest age gap between a child and the youngest adult of their household.
+     */
+    @Getter
+    private final int maxParentAgeGap;
+
+    /**
+     * The share of adults in couples, where the population does not say.
+     */
+    @Getter
+    private final double defaultPartneredShare;
+
+    /**
+     * The segment of men, for opposite-sex couples.
+     */
+    @Getter
+    private final String maleSegment;
+
+    /**
+     * The segment of women, for opposite-sex couples.
+     */
+    @Getter
+    private final String femaleSegment;
+
+    /**
+     * @pre adultAge >= 0
+     * @pre 0 <= minParentAgeGap <= maxParentAgeGap
+     * @pre defaultPartneredShare in [0, 1]
+     */
+    @Builder
+    private HouseholdFormer(@NonNull RegionDataset data,
+                            long seed,
+                            int adultAge,
+                            int minParentAgeGap,
+                            int maxParentAgeGap,
+                            double defaultPartneredShare,
+                            @NonNull String maleSegment,
+                            @NonNull String femaleSegment) {
+        // Sanity check.
+        precondition("Adult age must be non-negative.", adultAge >= 0);
+        precondition("Parent age gaps must be a non-negative [min, max] pair.", 0 <= minParentAgeGap && minParentAgeGap <= maxParentAgeGap);
+        precondition("The default partnered share must be in [0, 1].", defaultPartneredShare >= 0 && defaultPartneredShare <= 1);
+
+        // Record.
+        this.data = data;
+        this.seed = seed;
+        this.adultAge = adultAge;
+        this.minParentAgeGap = minParentAgeGap;
+        this.maxParentAgeGap = maxParentAgeGap;
+        this.defaultPartneredShare = defaultPartneredShare;
+        this.maleSegment = maleSegment;
+        this.femaleSegment = femaleSegment;
+    }
+
+    /**
+     * @return
+     *  A builder preset with adults from 18, parents 18 to 45 years older than their children, half of adults in
+     *  couples where the population does not say, and "Male" and "Female" segments.
+     */
+    public static HouseholdFormerBuilder standard(@NonNull RegionDataset data, long seed) {
+        return builder()
+                .data(data)
+                .seed(seed)
+                .adultAge(18)
+                .minParentAgeGap(18)
+                .maxParentAgeGap(45)
+                .defaultPartneredShare(0.5)
+                .maleSegment("Male")
+                .femaleSegment("Female");
+    }
+
+    /**
+     * @return
+     *  The household of every person.
+     * @pre people were produced from this former's dataset
+     * @pre every {@value #PARTNERED_MEN} population attribute is a non-negative number
+     */
+    public Households form(@NonNull PersonTable people) {
+        // Sanity check.
+        int locationCount = data.getLocationCount();
+        precondition("People must come from the former's dataset.", people.getLocationCount() == locationCount);
+
+        // Form each location's households, numbered from zero within the location.
+        int[] households = new int[people.size()];
+        int[] counts = new int[locationCount];
+        IntStream.range(0, locationCount).parallel().forEach(i -> counts[i] = formLocation(people, i, households));
+
+        // Number households across locations, then list members with a counting sort.
+        int[] starts = new int[locationCount + 1];
+        for (int i = 0; i < locationCount; i += 1) {
+            starts[i + 1] = starts[i] + counts[i];
+        }
+        IntStream.range(0, locationCount).parallel().forEach(i -> {
+            for (int p = people.getFirst(i); p < people.getEnd(i); p += 1) {
+                households[p] += starts[i];
+            }
+        });
+        int householdCount = starts[locationCount];
+        int[] offsets = new int[householdCount + 1];
+        for (int household : households) {
+            offsets[household + 1] += 1;
+        }
+        for (int h = 0; h < householdCount; h += 1) {
+            offsets[h + 1] += offsets[h];
+        }
+        int[] members = new int[people.size()];
+        int[] cursors = Arrays.copyOf(offsets, householdCount);
+        for (int p = 0; p < households.length; p += 1) {
+            members[cursors[households[p]]++] = p;
+        }
+        return new Households(households, offsets, members);
+    }
+
+    /**
+     * Forms the households of one location, writing each resident's household number (from zero) to result.
+     *
+     * @return
+     *  The number of households formed.
+     */
+    private int formLocation(PersonTable people, int location, int[] result) {
+        int first = people.getFirst(location);
+        int end = people.getEnd(location);
+        if (first == end) {
+            return 0;
+        }
+        if (data.getLocation(location).getBoolean(assistedLiving)) {
+            for (int p = first; p < end; p += 1) {
+                result[p] = p - first;
+            }
+            return end - first;
+        }
+        SplittableRandom rng = RandomStreams.forKey(seed, data.getLocation(location).getId() + "/Households");
+
+        // Split residents into men, women, other adults and children.
+        int male = people.getSegments().indexOf(maleSegment);
+        int female = people.getSegments().indexOf(femaleSegment);
+        int[] men = new int[end - first];
+        int[] women = new int[end - first];
+        int[] adults = new int[end - first];
+        int[] children = new int[end - first];
+        int menCount = 0;
+        int womenCount = 0;
+        int adultCount = 0;
+        int childCount = 0;
+        for (int p = first; p < end; p += 1) {
+            if (people.getAge(p) < adultAge) {
+                children[childCount++] = p;
+            }
+            else if (people.getSegmentIndex(p) == male && female >= 0) {
+                men[menCount++] = p;
+            }
+            else if (people.getSegmentIndex(p) == female && male >= 0) {
+                women[womenCount++] = p;
+            }
+            else {
+                adults[adultCount++] = p;
+            }
+        }
+
+        // Pair couples: choose who is partnered at random, then pair them in order of age.
+        int allAdults = menCount + womenCount + adultCount;
+        int target = (int) Math.round(allAdults * defaultPartneredShare / 2);
+        Population<String> population = data.hasPopulation(location) ? data.getPopulation(location) : null;
+        if (population != null && population.hasAttribute(partneredMen)) {
+            // The attribute counts the whole location, including its sublocations, whose residents are housed there.
+            int inclusive = population.getCount(adultAge, Integer.MAX_VALUE);
+            int exclusive = data.getExclusivePopulation(location).getCount(adultAge, Integer.MAX_VALUE);
+            target = inclusive == 0 ? 0 : (int) Math.round(partneredMen(population, location) * exclusive / inclusive);
+        }
+        int[] youngest = new int[allAdults];
+        int households = 0;
+        int sexed = Math.min(target, Math.min(menCount, womenCount));
+        shuffle(men, menCount, rng);
+        shuffle(women, womenCount, rng);
+        int[] husbands = sortByAge(people, men, sexed);
+        int[] wives = sortByAge(people, women, sexed);
+        for (int k = 0; k < sexed; k += 1, households += 1) {
+            result[husbands[k]] = households;
+            result[wives[k]] = households;
+            youngest[households] = people.getAge(husbands[k]) < people.getAge(wives[k]) ? husbands[k] : wives[k];
+        }
+        int unsexed = Math.min(target - sexed, adultCount / 2);
+        shuffle(adults, adultCount, rng);
+        int[] partners = sortByAge(people, adults, 2 * unsexed);
+        for (int k = 0; k < unsexed; k += 1, households += 1) {
+            result[partners[2 * k]] = households;
+            result[partners[2 * k + 1]] = households;
+            youngest[households] = partners[2 * k];
+        }
+
+        // Everyone else lives alone.
+        households = alone(men, sexed, menCount, result, youngest, households);
+        households = alone(women, sexed, womenCount, result, youngest, households);
+        households = alone(adults, 2 * unsexed, adultCount, result, youngest, households);
+
+        // Place children with plausible parents.
+        if (households == 0) {
+            for (int k = 0; k < childCount; k += 1) {
+                result[children[k]] = 0;
+            }
+            return childCount > 0 ? 1 : 0;
+        }
+        int[] byAge = sortByAge(people, youngest, households);
+        int[] years = new int[households];
+        for (int h = 0; h < households; h += 1) {
+            years[h] = (int) people.getAge(byAge[h]);
+        }
+        for (int k = 0; k < childCount; k += 1) {
+            int age = (int) people.getAge(children[k]);
+            int lo = firstAtLeast(years, age + minParentAgeGap);
+            int hi = firstAtLeast(years, age + maxParentAgeGap + 1);
+            int h = lo < hi ? lo + rng.nextInt(hi - lo) : nearest(years, lo, age);
+            result[children[k]] = result[byAge[h]];
+        }
+        return households;
+    }
+
+    /**
+     * @return
+     *  Of the households either side of the given index, the one whose youngest adult is nearest to a plausible
+     *  parent's age for the child.
+     * @pre households with a plausible parent start at the given index but there are none
+     */
+    private int nearest(int[] years, int index, int childAge) {
+        if (index == years.length) {
+            return index - 1;
+        }
+        if (index == 0) {
+            return 0;
+        }
+        int tooOld = years[index] - (childAge + maxParentAgeGap);
+        int tooYoung = (childAge + minParentAgeGap) - years[index - 1];
+        return tooYoung <= tooOld ? index - 1 : index;
+    }
+
+    /**
+     * @return
+     *  The population's number of partnered men.
+     * @pre the population's {@value #PARTNERED_MEN} attribute is a non-negative number
+     */
+    private double partneredMen(Population<String> population, int location) {
+        String text = population.getString(partneredMen);
+        double result;
+        try {
+            result = Double.parseDouble(text);
+        }
+        catch (NumberFormatException e) {
+            result = Double.NaN;
+        }
+        precondition(
+                () -> "The " + PARTNERED_MEN + " attribute of " + data.getLocation(location).getId()
+                        + " must be a non-negative number but is " + text,
+                result >= 0);
+        return result;
+    }
+
+    /**
+     * Gives each of people[from, to) a household of their own.
+     *
+     * @return
+     *  The number of households afterwards.
+     */
+    private static int alone(int[] people, int from, int to, int[] result, int[] youngest, int households) {
+        for (int k = from; k < to; k += 1, households += 1) {
+            result[people[k]] = households;
+            youngest[households] = people[k];
+        }
+        return households;
+    }
+
+    /**
+     * Shuffles people[0, count).
+     */
+    private static void shuffle(int[] people, int count, SplittableRandom rng) {
+        for (int i = count - 1; i > 0; i -= 1) {
+            int j = rng.nextInt(i + 1);
+            int swap = people[i];
+            people[i] = people[j];
+            people[j] = swap;
+        }
+    }
+
+    /**
+     * @return
+     *  people[0, count), sorted by whole years of age with a (stable) counting sort.
+     */
+    private static int[] sortByAge(PersonTable table, int[] people, int count) {
+        int years = 0;
+        for (int k = 0; k < count; k += 1) {
+            years = Math.max(years, (int) table.getAge(people[k]) + 1);
+        }
+        int[] starts = new int[years + 1];
+        for (int k = 0; k < count; k += 1) {
+            starts[(int) table.getAge(people[k]) + 1] += 1;
+        }
+        for (int y = 0; y < years; y += 1) {
+            starts[y + 1] += starts[y];
+        }
+        int[] result = new int[count];
+        for (int k = 0; k < count; k += 1) {
+            result[starts[(int) table.getAge(people[k])]++] = people[k];
+        }
+        return result;
+    }
+
+    /**
+     * @return
+     *  The first index whose value is >= the given value, or values.length if none.
+     * @pre values are sorted
+     */
+    private static int firstAtLeast(int[] values, int value) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < value) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,101 @@
+package com.luminesim.regions.synthesis;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The household each synthesized person lives in, stored as compressed sparse rows: the members of household h are
+ * {@link #getMember(int)} for [{@link #getFirst(int)}, {@link #getEnd(int)}). Households are numbered by location,
+ * so each location's households are contiguous.
+ *
+ * @apiNote
+ *  Immutable; safe to share between threads. People are identified by their rows in a {@link PersonTable}.
+ * @see HouseholdFormer
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class Households {
+
+    /**
+     * The household of each person.
+     */
+    private final int[] households;
+
+    /**
+     * The first member of each household, plus the number of people at the end.
+     */
+    private final int[] offsets;
+
+    /**
+     * Members, by household.
+     */
+    private final int[] members;
+
+    /**
+     * @return
+     *  The number of people.
+     */
+    public int size() {
+        return households.length;
+    }
+
+    /**
+     * @return
+     *  The number of households.
+     */
+    public int getHouseholdCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return
+     *  The person's household.
+     */
+    public int getHousehold(int person) {
+        return households[person];
+    }
+
+    /**
+     * @return
+     *  The household's first entry in {@link #getMember(int)}.
+     */
+    public int getFirst(int household) {
+        return offsets[household];
+    }
+
+    /**
+     * @return
+     *  One past the household's last entry in {@link #getMember(int)}.
+     */
+    public int getEnd(int household) {
+        return offsets[household + 1];
+    }
+
+    /**
+     * @return
+     *  The number of people in the household.
+     */
+    public int getHouseholdSize(int household) {
+        return offsets[household + 1] - offsets[household];
+    }
+
+    /**
+     * @return
+     *  The person at the given entry.
+     */
+    public int getMember(int entry) {
+        return members[entry];
+    }
+
+    /**
+     * @return
+     *  A copy of the household of each person, e.g. for {@link ContactNetworkBuilder#add(ContactContext, double, int[])}.
+     */
+    public int[] toGroups() {
+        return households.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "Households(size=" + size() + ", households=" + getHouseholdCount() + ")";
+    }
+}
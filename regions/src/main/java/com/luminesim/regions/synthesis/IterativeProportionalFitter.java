@@ -0,0 +1,231 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.Population;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Fits a {@link ContingencyTable} to known marginal totals using iterative proportional fitting (IPF), e.g. to build
+ * a joint age x sex x household-type distribution from separate age x sex and age x household-type census tables.
+ *
+ * @apiNote
+ *  The seed table supplies the interaction structure (use {@link ContingencyTable#filled(double, int...)} with 1 if
+ *  there is none); cells that are zero in the seed stay zero.
+ * @implNote
+ *  Works entirely over primitive arrays. Fits are independent, so {@link #fitAll(List, List)} runs them in parallel.
+ */
+@Getter
+public class IterativeProportionalFitter {
+
+    /**
+     * The most full passes over the marginals to make before giving up.
+     */
+    private final int maxIterations;
+
+    /**
+     * The largest difference allowed between a fitted marginal and its target, relative to the target
+     * (or absolute, for targets under 1).
+     */
+    private final double tolerance;
+
+    /**
+     * @pre maxIterations > 0
+     * @pre tolerance >= 0
+     */
+    public IterativeProportionalFitter(int maxIterations, double tolerance) {
+        // Sanity check.
+        precondition("Fitting needs at least one pass.", maxIterations > 0);
+        precondition("Tolerance must be non-negative.", tolerance >= 0);
+
+        // Record.
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Creates a fitter allowing up to 1000 passes and a relative tolerance of 1e-6.
+     */
+    public IterativeProportionalFitter() {
+        this(1000, 1e-6);
+    }
+
+    /**
+     * @return
+     *  The seed fitted to the marginals. The seed is unchanged.
+     * @pre every marginal refers to dimensions of the seed
+     */
+    public Fit fit(@NonNull ContingencyTable seed, @NonNull List<Marginal> marginals) {
+        // Setup.
+        ContingencyTable table = seed.copy();
+        double[] cells = table.cells();
+        int[][] mappings = new int[marginals.size()][];
+        double[][] targets = new double[marginals.size()][];
+        for (int m = 0; m < marginals.size(); m += 1) {
+            Marginal marginal = marginals.get(m);
+            precondition(
+                    () -> "Marginal has the wrong number of targets for its dimensions: " + marginal,
+                    marginal.targets.length == seed.marginalSize(marginal.dimensions));
+            mappings[m] = seed.marginalIndices(marginal.dimensions);
+            targets[m] = marginal.targets;
+        }
+
+        // Scale to each marginal in turn until all agree.
+        int iteration = 0;
+        boolean converged = false;
+        while (!converged && iteration < maxIterations) {
+            iteration += 1;
+            for (int m = 0; m < marginals.size(); m += 1) {
+                double[] factors = sums(cells, mappings[m], targets[m].length);
+                for (int k = 0; k < factors.length; k += 1) {
+                    factors[k] = factors[k] == 0 ? 0 : targets[m][k] / factors[k];
+                }
+                for (int i = 0; i < cells.length; i += 1) {
+                    cells[i] *= factors[mappings[m][i]];
+                }
+            }
+            converged = true;
+            for (int m = 0; m < marginals.size() && converged; m += 1) {
+                converged = withinTolerance(sums(cells, mappings[m], targets[m].length), targets[m]);
+            }
+        }
+        return new Fit(table, iteration, converged);
+    }
+
+    /**
+     * Fits many tables in parallel, e.g. one per location.
+     *
+     * @return
+     *  The fits, in the same order as the seeds.
+     * @pre seeds.size() == marginals.size()
+     */
+    public List<Fit> fitAll(@NonNull List<ContingencyTable> seeds, @NonNull List<List<Marginal>> marginals) {
+        precondition("Need one set of marginals per seed.", seeds.size() == marginals.size());
+        return IntStream
+                .range(0, seeds.size())
+                .parallel()
+                .mapToObj(i -> fit(seeds.get(i), marginals.get(i)))
+                .collect(Collectors.toList());
+    }
+
+    private boolean withinTolerance(double[] actual, double[] targets) {
+        for (int k = 0; k < targets.length; k += 1) {
+            if (Math.abs(actual[k] - targets[k]) > tolerance * Math.max(1, Math.abs(targets[k]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double[] sums(double[] cells, int[] mapping, int size) {
+        double[] result = new double[size];
+        for (int i = 0; i < cells.length; i += 1) {
+            result[mapping[i]] += cells[i];
+        }
+        return result;
+    }
+
+    /**
+     * Known totals over some of a table's dimensions.
+     */
+    public static class Marginal {
+        /**
+         * The dimensions the totals are over.
+         */
+        private final int[] dimensions;
+
+        /**
+         * The totals, with the last of the dimensions varying fastest.
+         */
+        private final double[] targets;
+
+        /**
+         * @pre targets are non-negative
+         */
+        public Marginal(@NonNull int[] dimensions, @NonNull double[] targets) {
+            for (double target : targets) {
+                precondition("Marginal targets must be non-negative.", target >= 0);
+            }
+            this.dimensions = dimensions.clone();
+            this.targets = targets.clone();
+        }
+
+        /**
+         * @return
+         *  The dimensions the totals are over. A copy.
+         */
+        public int[] getDimensions() {
+            return dimensions.clone();
+        }
+
+        /**
+         * @return
+         *  The totals, with the last of the dimensions varying fastest. A copy.
+         */
+        public double[] getTargets() {
+            return targets.clone();
+        }
+
+        /**
+         * @param segmentDimension The table dimension holding the segments.
+         * @param segments The segments, in the order of their categories.
+         * @param ageDimension The table dimension holding the age bands.
+         * @param edges The age band edges, e.g. {0, 5, 18, 65, 120}.
+         * @return
+         *  A segment x age band marginal taken from the population.
+         * @see Population#getCounts(Object, int[])
+         */
+        public static <SegmentType> Marginal of(@NonNull Population<SegmentType> population,
+                                                int segmentDimension,
+                                                @NonNull List<SegmentType> segments,
+                                                int ageDimension,
+                                                @NonNull int[] edges) {
+            int bands = edges.length - 1;
+            double[] targets = new double[segments.size() * bands];
+            for (int s = 0; s < segments.size(); s += 1) {
+                int[] counts = population.getCounts(segments.get(s), edges);
+                for (int b = 0; b < bands; b += 1) {
+                    int index = segmentDimension < ageDimension ? s * bands + b : b * segments.size() + s;
+                    targets[index] = counts[b];
+                }
+            }
+            return segmentDimension < ageDimension
+                    ? new Marginal(new int[]{segmentDimension, ageDimension}, targets)
+                    : new Marginal(new int[]{ageDimension, segmentDimension}, targets);
+        }
+
+        @Override
+        public String toString() {
+            return "Marginal(dimensions=" + Arrays.toString(dimensions) + ", targets=" + targets.length + ")";
+        }
+    }
+
+    /**
+     * The outcome of a fit.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Fit {
+        /**
+         * The fitted table.
+         */
+        private final ContingencyTable table;
+
+        /**
+         * The number of full passes over the marginals.
+         */
+        private final int iterations;
+
+        /**
+         * True if every marginal was matched within tolerance.
+         */
+        private final boolean converged;
+    }
+}
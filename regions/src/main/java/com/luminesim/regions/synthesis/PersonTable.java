@@ -0,0 +1,114 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.SegmentDictionary;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Synthesized individuals stored column by column, one row per person.
+ * Rows are grouped by location: the people living in location i (by its {@link com.luminesim.regions.RegionDataset}
+ * index) are rows [{@link #getFirst(int)}, {@link #getEnd(int)}).
+ *
+ * @apiNote
+ *  Immutable; safe to share between threads.
+ * @see PopulationSynthesizer#synthesizeTable()
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class PersonTable {
+
+    /**
+     * The first row of each location, plus the total number of rows at the end.
+     */
+    private final int[] locationOffsets;
+
+    /**
+     * The location index of each person.
+     */
+    private final int[] locations;
+
+    /**
+     * The segment index of each person, in {@link #getSegments()}.
+     */
+    private final int[] segmentIndices;
+
+    /**
+     * The age of each person.
+     */
+    private final double[] ages;
+
+    /**
+     * The segments people belong to.
+     */
+    @Getter
+    private final SegmentDictionary<String> segments;
+
+    /**
+     * @return
+     *  The number of people.
+     */
+    public int size() {
+        return locations.length;
+    }
+
+    /**
+     * @return
+     *  The number of locations covered by the table.
+     */
+    public int getLocationCount() {
+        return locationOffsets.length - 1;
+    }
+
+    /**
+     * @return
+     *  The first row of the location's people.
+     */
+    public int getFirst(int location) {
+        return locationOffsets[location];
+    }
+
+    /**
+     * @return
+     *  One past the last row of the location's people.
+     */
+    public int getEnd(int location) {
+        return locationOffsets[location + 1];
+    }
+
+    /**
+     * @return
+     *  The location index of the person.
+     */
+    public int getLocation(int person) {
+        return locations[person];
+    }
+
+    /**
+     * @return
+     *  The segment index of the person, in {@link #getSegments()}.
+     */
+    public int getSegmentIndex(int person) {
+        return segmentIndices[person];
+    }
+
+    /**
+     * @return
+     *  The person's segment.
+     */
+    public String getSegment(int person) {
+        return segments.get(segmentIndices[person]);
+    }
+
+    /**
+     * @return
+     *  The person's age.
+     */
+    public double getAge(int person) {
+        return ages[person];
+    }
+
+    @Override
+    public String toString() {
+        return "PersonTable(size=" + size() + ", locations=" + getLocationCount() + ")";
+    }
+}
@@ -0,0 +1,438 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.POIGroup.POIType;
+import com.luminesim.regions.RegionDataset;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Assigns synthesized people to POIs without exceeding any POI's capacity: people attend POIs by age
+ * (e.g. secondary schools from 14 to 18) and people of working age who attend nothing are employed.
+ * People are placed as close to home as the location hierarchy allows: first in their own location and its
+ * sublocations, then in their parent's, and so on up to the whole connected hierarchy.
+ *
+ * @apiNote
+ *  Example: {@code PoiAssigner.standard(data, seed).build().assign(people, pois)}
+ * @implNote
+ *  Locations are laid out in hierarchy pre-order, so every location's subtree is a contiguous range of positions
+ *  and the POIs of each subtree are a contiguous range once sorted by position. Each POI points to the next POI
+ *  with room through a union-find structure, so finding the nearest POI with room in a range is near-constant
+ *  time no matter how many POIs are already full; assignment is O(people + POIs) overall.
+ *  Each (connected hierarchy, POI type) pair is independent and handled in parallel. People are handled in an
+ *  order shuffled by a random stream derived from the seed and the pair, so results depend only on the seed.
+ */
+public class PoiAssigner {
+
+    /**
+     * The dataset the people and POIs are in.
+     */
+    @Getter
+    private final RegionDataset data;
+
+    /**
+     * The seed from which every random stream is derived.
+     */
+    @Getter
+    private final long seed;
+
+    /**
+     * The ages [start, end) attending each type of POI. POI types not present have no attendees.
+     */
+    private final Map<POIType, int[]> attendeeAges;
+
+    /**
+     * The first age at which people work.
+     */
+    @Getter
+    private final int workingAgeStart;
+
+    /**
+     * The age at which people stop working.
+     */
+    @Getter
+    private final int workingAgeEnd;
+
+    /**
+     * @pre attendee age ranges are [start, end) pairs with start <= end
+     * @pre no two attendee age ranges overlap
+     * @pre working age start <= working age end
+     */
+    @Builder
+    private PoiAssigner(@NonNull RegionDataset data,
+                        long seed,
+                        @Singular("attendeeAges") Map<POIType, int[]> attendeeAges,
+                        int workingAgeStart,
+                        int workingAgeEnd) {
+        // Sanity check.
+        attendeeAges.forEach((type, ages) -> precondition(
+                () -> "Attendee ages must be a [start, end) pair but " + type + " has " + Arrays.toString(ages),
+                ages.length == 2 && ages[0] <= ages[1]));
+        attendeeAges.forEach((a, first) -> attendeeAges.forEach((b, second) -> precondition(
+                () -> "Attendee ages must not overlap but " + a + " and " + b + " do.",
+                a == b || first[1] <= second[0] || second[1] <= first[0])));
+        precondition("Working ages must be a [start, end) pair.", workingAgeStart <= workingAgeEnd);
+
+        // Record.
+        this.data = data;
+        this.seed = seed;
+        this.attendeeAges = new EnumMap<>(POIType.class);
+        attendeeAges.forEach((type, ages) -> this.attendeeAges.put(type, ages.clone()));
+        this.workingAgeStart = workingAgeStart;
+        this.workingAgeEnd = workingAgeEnd;
+    }
+
+    /**
+     * @return
+     *  A builder preset with typical Canadian ages: primary school from 5 to 14, secondary school from 14 to 18,
+     *  tertiary school from 18 to 23, assisted living from 75, and work from 18 to 65.
+     */
+    public static PoiAssignerBuilder standard(@NonNull RegionDataset data, long seed) {
+        return builder()
+                .data(data)
+                .seed(seed)
+                .attendeeAges(POIType.PrimarySchool, new int[]{5, 14})
+                .attendeeAges(POIType.SecondarySchool, new int[]{14, 18})
+                .attendeeAges(POIType.TertiarySchool, new int[]{18, 23})
+                .attendeeAges(POIType.AssistedLiving, new int[]{75, Integer.MAX_VALUE})
+                .workingAgeStart(18)
+                .workingAgeEnd(65);
+    }
+
+    /**
+     * @return
+     *  The POIs each person attends and works at.
+     * @pre people and POIs were produced from this assigner's dataset
+     */
+    public PoiAssignment assign(@NonNull PersonTable people, @NonNull PoiTable pois) {
+        // Sanity check.
+        int locationCount = data.getLocationCount();
+        precondition("People must come from the assigner's dataset.", people.getLocationCount() == locationCount);
+        precondition("POIs must come from the assigner's dataset.", pois.getLocationCount() == locationCount);
+
+        Layout layout = new Layout(data);
+        POIType[] types = POIType.values();
+        int[] attended = new int[people.size()];
+        int[] employers = new int[people.size()];
+        Arrays.fill(attended, PoiAssignment.NONE);
+        Arrays.fill(employers, PoiAssignment.NONE);
+
+        // Attendance, by the POI type each person's age calls for.
+        int[] attendanceKinds = new int[people.size()];
+        IntStream.range(0, people.size()).parallel().forEach(p -> attendanceKinds[p] = attendanceKind(people.getAge(p)));
+        Candidates[] attendable = new Candidates[types.length];
+        for (POIType type : attendeeAges.keySet()) {
+            attendable[type.ordinal()] = new Candidates(layout, pois, type, false);
+        }
+        assignAll(layout, people, attendanceKinds, types.length, kind -> attendable[kind], kind -> types[kind].name(), attended);
+
+        // Employment, for everyone of working age attending nothing.
+        int[] employmentKinds = new int[people.size()];
+        IntStream.range(0, people.size()).parallel().forEach(p -> {
+            boolean working = people.getAge(p) >= workingAgeStart && people.getAge(p) < workingAgeEnd;
+            employmentKinds[p] = working && attended[p] == PoiAssignment.NONE ? 0 : -1;
+        });
+        Candidates employing = new Candidates(layout, pois, null, true);
+        assignAll(layout, people, employmentKinds, 1, kind -> employing, kind -> "Employees", employers);
+
+        return new PoiAssignment(attended, employers);
+    }
+
+    /**
+     * @return
+     *  The ordinal of the POI type attended at the age, or -1 if none.
+     */
+    private int attendanceKind(double age) {
+        for (Map.Entry<POIType, int[]> entry : attendeeAges.entrySet()) {
+            if (age >= entry.getValue()[0] && age < entry.getValue()[1]) {
+                return entry.getKey().ordinal();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Assigns people in parallel, one task per (connected hierarchy, kind) pair.
+     *
+     * @param kinds The kind of POI each person needs, in [0, kindCount), or -1 for none.
+     * @param candidates The POIs available to each kind.
+     * @param names The name of each kind, used to derive random streams.
+     * @param result Receives the POI of each person assigned.
+     */
+    private void assignAll(Layout layout,
+                           PersonTable people,
+                           int[] kinds,
+                           int kindCount,
+                           IntFunction<Candidates> candidates,
+                           IntFunction<String> names,
+                           int[] result) {
+        // Group people by task with a counting sort, keeping each group in row order.
+        int taskCount = layout.componentCount * kindCount;
+        int[] offsets = new int[taskCount + 1];
+        int[] tasks = new int[people.size()];
+        for (int p = 0; p < people.size(); p += 1) {
+            tasks[p] = kinds[p] < 0 ? -1 : layout.components[people.getLocation(p)] * kindCount + kinds[p];
+            if (tasks[p] >= 0) {
+                offsets[tasks[p] + 1] += 1;
+            }
+        }
+        for (int t = 0; t < taskCount; t += 1) {
+            offsets[t + 1] += offsets[t];
+        }
+        int[] rows = new int[offsets[taskCount]];
+        int[] cursors = Arrays.copyOf(offsets, taskCount);
+        for (int p = 0; p < people.size(); p += 1) {
+            if (tasks[p] >= 0) {
+                rows[cursors[tasks[p]]++] = p;
+            }
+        }
+
+        // Assign.
+        IntStream.range(0, taskCount).parallel().forEach(t -> {
+            int component = t / kindCount;
+            int kind = t % kindCount;
+            if (offsets[t] == offsets[t + 1] || candidates.apply(kind) == null) {
+                return;
+            }
+            String root = data.getLocation(layout.componentRoots[component]).getId();
+            SplittableRandom rng = RandomStreams.forKey(seed, root + "/" + names.apply(kind));
+            candidates.apply(kind).assign(layout, people, component, rows, offsets[t], offsets[t + 1], rng, result);
+        });
+    }
+
+    /**
+     * The locations of a dataset in hierarchy pre-order, with each connected hierarchy's locations together.
+     * Locations with several parents appear under the first parent reached.
+     */
+    private static final class Layout {
+
+        /**
+         * The position of each location.
+         */
+        final int[] positions;
+
+        /**
+         * One past the last position of each location's subtree.
+         */
+        final int[] ends;
+
+        /**
+         * The parent each location was reached from, or -1 for roots.
+         */
+        final int[] parents;
+
+        /**
+         * The connected hierarchy each location is in.
+         */
+        final int[] components;
+
+        /**
+         * The first position of each connected hierarchy, plus one past the last at the end.
+         */
+        final int[] componentStarts;
+
+        /**
+         * A root of each connected hierarchy.
+         */
+        final int[] componentRoots;
+
+        final int componentCount;
+
+        Layout(RegionDataset data) {
+            int n = data.getLocationCount();
+            int[][] children = new int[n][];
+            IntStream.range(0, n).forEach(i -> {
+                children[i] = new int[data.getDirectSubLocations(i).size()];
+                int[] k = {0};
+                data.forEachDirectSubLocation(i, child -> children[i][k[0]++] = child);
+            });
+
+            // Find connected hierarchies, ordering roots by hierarchy and then by index.
+            int[] links = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                links[i] = i;
+            }
+            for (int i = 0; i < n; i += 1) {
+                for (int child : children[i]) {
+                    links[find(links, child)] = find(links, i);
+                }
+            }
+            int[] roots = data
+                    .getRootLocations()
+                    .stream()
+                    .mapToInt(root -> data.getIndex(root.getId()))
+                    .boxed()
+                    .sorted((a, b) -> find(links, a) != find(links, b)
+                            ? Integer.compare(find(links, a), find(links, b))
+                            : Integer.compare(a, b))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            // Lay out each hierarchy depth-first.
+            positions = new int[n];
+            ends = new int[n];
+            parents = new int[n];
+            components = new int[n];
+            Arrays.fill(positions, -1);
+            int[] componentStarts = new int[roots.length + 1];
+            int[] componentRoots = new int[roots.length];
+            int[] stack = new int[n];
+            int[] cursors = new int[n];
+            int next = 0;
+            int component = -1;
+            for (int r = 0; r < roots.length; r += 1) {
+                int root = roots[r];
+                if (r == 0 || find(links, root) != find(links, roots[r - 1])) {
+                    component += 1;
+                    componentStarts[component] = next;
+                    componentRoots[component] = root;
+                }
+                int size = 0;
+                stack[size++] = root;
+                positions[root] = next++;
+                parents[root] = -1;
+                components[root] = component;
+                while (size > 0) {
+                    int top = stack[size - 1];
+                    if (cursors[top] < children[top].length) {
+                        int child = children[top][cursors[top]++];
+                        if (positions[child] < 0) {
+                            stack[size++] = child;
+                            positions[child] = next++;
+                            parents[child] = top;
+                            components[child] = component;
+                        }
+                    }
+                    else {
+                        ends[top] = next;
+                        size -= 1;
+                    }
+                }
+            }
+            componentCount = component + 1;
+            componentStarts[componentCount] = next;
+            this.componentStarts = Arrays.copyOf(componentStarts, componentCount + 1);
+            this.componentRoots = Arrays.copyOf(componentRoots, componentCount);
+        }
+    }
+
+    /**
+     * The POIs available to one kind of person, sorted by the position of their location, with their capacities.
+     */
+    private static final class Candidates {
+
+        /**
+         * POI rows, sorted by position.
+         */
+        final int[] pois;
+
+        /**
+         * The capacity of each sorted POI.
+         */
+        final int[] capacities;
+
+        /**
+         * The first sorted POI at or after each position, plus the number of POIs at the end.
+         */
+        final int[] firstAt;
+
+        /**
+         * @param type The type of POI to include, or null for all.
+         * @param employees True to use employee capacities, otherwise attendee capacities.
+         */
+        Candidates(Layout layout, PoiTable table, POIType type, boolean employees) {
+            int positions = layout.positions.length;
+            firstAt = new int[positions + 1];
+            for (int poi = 0; poi < table.size(); poi += 1) {
+                if (includes(table, poi, type, employees)) {
+                    firstAt[layout.positions[table.getLocation(poi)] + 1] += 1;
+                }
+            }
+            for (int i = 0; i < positions; i += 1) {
+                firstAt[i + 1] += firstAt[i];
+            }
+            pois = new int[firstAt[positions]];
+            capacities = new int[firstAt[positions]];
+            int[] cursors = Arrays.copyOf(firstAt, positions);
+            for (int poi = 0; poi < table.size(); poi += 1) {
+                if (includes(table, poi, type, employees)) {
+                    int k = cursors[layout.positions[table.getLocation(poi)]]++;
+                    pois[k] = poi;
+                    capacities[k] = employees ? table.getEmployees(poi) : table.getAttendees(poi);
+                }
+            }
+        }
+
+        private static boolean includes(PoiTable table, int poi, POIType type, boolean employees) {
+            return (type == null || table.getType(poi) == type)
+                    && (employees ? table.getEmployees(poi) : table.getAttendees(poi)) > 0;
+        }
+
+        /**
+         * Assigns people rows[from, to), all in the given connected hierarchy, in an order shuffled by rng.
+         */
+        void assign(Layout layout, PersonTable people, int component, int[] rows, int from, int to, SplittableRandom rng, int[] result) {
+            int lo = firstAt[layout.componentStarts[component]];
+            int hi = firstAt[layout.componentStarts[component + 1]];
+            int count = hi - lo;
+            if (count == 0) {
+                return;
+            }
+
+            // next[k] leads to the first POI at or after k with room; count is the sentinel.
+            int[] remaining = Arrays.copyOfRange(capacities, lo, hi);
+            int[] next = new int[count + 1];
+            for (int k = 0; k <= count; k += 1) {
+                next[k] = k;
+            }
+
+            int[] order = Arrays.copyOfRange(rows, from, to);
+            for (int i = order.length - 1; i > 0; i -= 1) {
+                int j = rng.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            for (int person : order) {
+                int k = count;
+                for (int l = people.getLocation(person); l >= 0 && k == count; l = layout.parents[l]) {
+                    k = find(next, firstAt[layout.positions[l]] - lo);
+                    k = k < firstAt[layout.ends[l]] - lo ? k : count;
+                }
+                if (k == count) {
+                    k = find(next, 0);
+                }
+                if (k == count) {
+                    return;
+                }
+                result[person] = pois[lo + k];
+                remaining[k] -= 1;
+                if (remaining[k] == 0) {
+                    next[k] = k + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return
+     *  The representative of the set holding i, halving the path to it.
+     */
+    private static int find(int[] links, int i) {
+        while (links[i] != i) {
+            links[i] = links[links[i]];
+            i = links[i];
+        }
+        return i;
+    }
+}
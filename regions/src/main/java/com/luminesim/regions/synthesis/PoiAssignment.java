@@ -0,0 +1,55 @@
+package com.luminesim.regions.synthesis;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The POIs each synthesized person attends (e.g. as a student or resident) and works at.
+ * People and POIs are identified by their rows in a {@link PersonTable} and a {@link PoiTable}.
+ *
+ * @apiNote
+ *  Immutable; safe to share between threads.
+ * @see PoiAssigner
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class PoiAssignment {
+
+    /**
+     * The value used for people with no POI.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The POI each person attends, or {@link #NONE}.
+     */
+    private final int[] attended;
+
+    /**
+     * The POI each person works at, or {@link #NONE}.
+     */
+    private final int[] employers;
+
+    /**
+     * @return
+     *  The number of people.
+     */
+    public int size() {
+        return attended.length;
+    }
+
+    /**
+     * @return
+     *  The POI the person attends, or {@link #NONE}.
+     */
+    public int getAttended(int person) {
+        return attended[person];
+    }
+
+    /**
+     * @return
+     *  The POI the person works at, or {@link #NONE}.
+     */
+    public int getEmployer(int person) {
+        return employers[person];
+    }
+}
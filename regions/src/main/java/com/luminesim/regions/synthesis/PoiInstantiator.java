@@ -0,0 +1,96 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.POIGroup;
+import com.luminesim.regions.RegionDataset;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Expands each {@link POIGroup} of a {@link RegionDataset} into its individual POIs, drawing each POI's number of
+ * employees and attendees uniformly from the group's [min, max] ranges.
+ *
+ * @implNote
+ *  POIs are counted per location first, so every location knows where its rows start and can be filled in
+ *  parallel without coordination. Every location draws from its own random stream (derived from the seed and its
+ *  ID), so the table is identical for a given seed no matter how the work is scheduled.
+ */
+@RequiredArgsConstructor
+public class PoiInstantiator {
+
+    /**
+     * The dataset whose POI groups are expanded.
+     */
+    @Getter
+    @NonNull
+    private final RegionDataset data;
+
+    /**
+     * The seed from which every location's random stream is derived.
+     */
+    @Getter
+    private final long seed;
+
+    /**
+     * @return
+     *  Every POI in the dataset, grouped by location index.
+     * @pre every group's min <= max for employees and attendees
+     * @pre fewer than 2^31 POIs in total
+     */
+    public PoiTable instantiate() {
+        // Count.
+        int locationCount = data.getLocationCount();
+        int[] offsets = new int[locationCount + 1];
+        long total = 0;
+        for (int i = 0; i < locationCount; i += 1) {
+            offsets[i] = (int) total;
+            for (POIGroup group : data.getPOIGroups(i)) {
+                precondition(() -> "Group has more employees at minimum than maximum: " + group.getLabel(), group.getMinEmployees() <= group.getMaxEmployees());
+                precondition(() -> "Group has more attendees at minimum than maximum: " + group.getLabel(), group.getMinAttendees() <= group.getMaxAttendees());
+                precondition(() -> "Group must have a non-negative number of POIs: " + group.getLabel(), group.getNumber() >= 0);
+                total += group.getNumber();
+            }
+            precondition("Too many POIs to instantiate.", total < Integer.MAX_VALUE);
+        }
+        offsets[locationCount] = (int) total;
+
+        // Fill each location's rows.
+        int[] locations = new int[(int) total];
+        byte[] types = new byte[(int) total];
+        int[] employees = new int[(int) total];
+        int[] attendees = new int[(int) total];
+        IntStream.range(0, locationCount).parallel().forEach(i -> {
+            List<POIGroup> groups = data.getPOIGroups(i);
+            if (groups.isEmpty()) {
+                return;
+            }
+            SplittableRandom rng = RandomStreams.forKey(seed, data.getLocation(i).getId() + "/POIs");
+            int row = offsets[i];
+            for (POIGroup group : groups) {
+                for (int k = 0; k < group.getNumber(); k += 1, row += 1) {
+                    locations[row] = i;
+                    types[row] = (byte) group.getGroupType().ordinal();
+                    employees[row] = draw(rng, group.getMinEmployees(), group.getMaxEmployees());
+                    attendees[row] = draw(rng, group.getMinAttendees(), group.getMaxAttendees());
+                }
+            }
+        });
+        return new PoiTable(offsets, locations, types, employees, attendees);
+    }
+
+    /**
+     * @return
+     *  A number drawn uniformly from [min, max].
+     * @implNote
+     *  Drawn in long arithmetic, so max may be {@link Integer#MAX_VALUE}.
+     */
+    private static int draw(SplittableRandom rng, int min, int max) {
+        return min == max ? min : min + (int) rng.nextLong((long) max - min + 1);
+    }
+}
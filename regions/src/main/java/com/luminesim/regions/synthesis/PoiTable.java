@@ -0,0 +1,139 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.POIGroup.POIType;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Individual points of interest (schools, workplaces, ...) stored column by column, one row per POI.
+ * Rows are grouped by location: the POIs of location i (by its {@link com.luminesim.regions.RegionDataset} index)
+ * are rows [{@link #getFirst(int)}, {@link #getEnd(int)}).
+ *
+ * @apiNote
+ *  Immutable; safe to share between threads.
+ * @see PoiInstantiator
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class PoiTable {
+
+    private static final POIType[] types = POIType.values();
+
+    /**
+     * The first row of each location, plus the total number of rows at the end.
+     */
+    private final int[] locationOffsets;
+
+    /**
+     * The location index of each POI.
+     */
+    private final int[] locations;
+
+    /**
+     * The {@link POIType#ordinal()} of each POI.
+     */
+    private final byte[] typeOrdinals;
+
+    /**
+     * The number of employees of each POI.
+     */
+    private final int[] employees;
+
+    /**
+     * The number of attendees (e.g. students, residents) of each POI.
+     */
+    private final int[] attendees;
+
+    /**
+     * @return
+     *  The number of POIs.
+     */
+    public int size() {
+        return locations.length;
+    }
+
+    /**
+     * @return
+     *  The number of locations covered by the table.
+     */
+    public int getLocationCount() {
+        return locationOffsets.length - 1;
+    }
+
+    /**
+     * @return
+     *  The first row of the location's POIs.
+     */
+    public int getFirst(int location) {
+        return locationOffsets[location];
+    }
+
+    /**
+     * @return
+     *  One past the last row of the location's POIs.
+     */
+    public int getEnd(int location) {
+        return locationOffsets[location + 1];
+    }
+
+    /**
+     * @return
+     *  The location index of the POI.
+     */
+    public int getLocation(int poi) {
+        return locations[poi];
+    }
+
+    /**
+     * @return
+     *  The type of the POI.
+     */
+    public POIType getType(int poi) {
+        return types[typeOrdinals[poi]];
+    }
+
+    /**
+     * @return
+     *  The number of employees of the POI.
+     */
+    public int getEmployees(int poi) {
+        return employees[poi];
+    }
+
+    /**
+     * @return
+     *  The number of attendees of the POI.
+     */
+    public int getAttendees(int poi) {
+        return attendees[poi];
+    }
+
+    /**
+     * @return
+     *  The total number of employees across POIs of the given type.
+     */
+    public long getTotalEmployees(@NonNull POIType type) {
+        long total = 0;
+        for (int i = 0; i < locations.length; i += 1) {
+            total += typeOrdinals[i] == type.ordinal() ? employees[i] : 0;
+        }
+        return total;
+    }
+
+    /**
+     * @return
+     *  The total number of attendees across POIs of the given type.
+     */
+    public long getTotalAttendees(@NonNull POIType type) {
+        long total = 0;
+        for (int i = 0; i < locations.length; i += 1) {
+            total += typeOrdinals[i] == type.ordinal() ? attendees[i] : 0;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "PoiTable(size=" + size() + ", locations=" + getLocationCount() + ")";
+    }
+}
@@ -0,0 +1,182 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.Location;
+import com.luminesim.regions.Population;
+import com.luminesim.regions.RegionDataset;
+import com.luminesim.regions.SegmentDictionary;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.luminesim.qa.ContractUtilities.precondition;
+
+/**
+ * Expands a {@link RegionDataset} into individuals.
+ * Each location receives exactly the people in its exclusive population (i.e. those not already in one of its
+ * sublocations), with ages spread evenly within each age range.
+ *
+ * @implNote
+ *  Work is split by hierarchy subtree across a fork-join pool. Every location draws from its own random stream
+ *  (derived from the seed and its ID), so the individuals produced for a location do not depend on scheduling.
+ *  Only the order in which locations reach the sink varies between runs.
+ */
+@RequiredArgsConstructor
+public class PopulationSynthesizer {
+
+    /**
+     * The dataset to expand.
+     */
+    @Getter
+    @NonNull
+    private final RegionDataset data;
+
+    /**
+     * The seed from which every location's random stream is derived.
+     */
+    @Getter
+    private final long seed;
+
+    /**
+     * Synthesizes every location's population on the common fork-join pool.
+     *
+     * @param sink Receives each individual. Called from many threads.
+     */
+    public void synthesize(@NonNull AgentSink sink) {
+        synthesize(ForkJoinPool.commonPool(), sink);
+    }
+
+    /**
+     * Synthesizes every location's population on the given pool.
+     *
+     * @param pool The pool on which to run.
+     * @param sink Receives each individual. Called from many threads.
+     */
+    public void synthesize(@NonNull ForkJoinPool pool, @NonNull AgentSink sink) {
+        Set<Location> visited = ConcurrentHashMap.newKeySet();
+        List<LocationTask> roots = data
+                .getRootLocations()
+                .stream()
+                .map(root -> new LocationTask(root, visited, sink))
+                .collect(Collectors.toList());
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(roots);
+            }
+        });
+    }
+
+    /**
+     * Synthesizes every location's population into a table, in parallel.
+     *
+     * @return
+     *  Every individual, grouped by location index. Each location holds exactly the individuals
+     *  {@link #synthesize(Location, AgentSink)} would produce for it, in the same order.
+     * @pre fewer than 2^31 individuals in total
+     * @implNote
+     *  People are counted per location first, so every location knows where its rows start and can be filled
+     *  without coordination.
+     */
+    public PersonTable synthesizeTable() {
+        // Count, naming segments in location order so that their indices do not depend on scheduling.
+        int locationCount = data.getLocationCount();
+        List<Population<String>> populations = IntStream
+                .range(0, locationCount)
+                .parallel()
+                .mapToObj(i -> data.hasPopulation(i) ? data.getExclusivePopulation(i) : null)
+                .collect(Collectors.toList());
+        SegmentDictionary<String> segments = new SegmentDictionary<>();
+        int[] offsets = new int[locationCount + 1];
+        long[] total = {0};
+        for (int i = 0; i < locationCount; i += 1) {
+            offsets[i] = (int) total[0];
+            if (populations.get(i) != null) {
+                populations.get(i).forEachSegment(segment -> {
+                    segments.intern(segment.getSegment());
+                    total[0] += segment.getCount();
+                });
+            }
+            precondition("Too many people to synthesize.", total[0] < Integer.MAX_VALUE);
+        }
+        offsets[locationCount] = (int) total[0];
+
+        // Fill each location's rows.
+        int[] locations = new int[offsets[locationCount]];
+        int[] segmentIndices = new int[offsets[locationCount]];
+        double[] ages = new double[offsets[locationCount]];
+        IntStream.range(0, locationCount).parallel().forEach(i -> {
+            if (populations.get(i) == null) {
+                return;
+            }
+            SplittableRandom rng = RandomStreams.forKey(seed, data.getLocation(i).getId());
+            int[] row = {offsets[i]};
+            populations.get(i).forEachSegment(segment -> {
+                int s = segments.indexOf(segment.getSegment());
+                for (int k = 0; k < segment.getCount(); k += 1, row[0] += 1) {
+                    locations[row[0]] = i;
+                    segmentIndices[row[0]] = s;
+                    ages[row[0]] = segment.getAge(rng);
+                }
+            });
+        });
+        return new PersonTable(offsets, locations, segmentIndices, ages, segments);
+    }
+
+    /**
+     * Synthesizes a single location's exclusive population.
+     *
+     * @param location The location.
+     * @param sink Receives each individual.
+     * @pre location is in the dataset
+     */
+    public void synthesize(@NonNull Location location, @NonNull AgentSink sink) {
+        if (!data.hasPopulation(location)) {
+            return;
+        }
+        Population<String> population = data.getExclusivePopulation(location);
+        SplittableRandom rng = RandomStreams.forKey(seed, location.getId());
+        population.forEachSegment(segment -> {
+            for (int i = 0; i < segment.getCount(); i += 1) {
+                sink.accept(location, segment.getSegment(), segment.getAge(rng));
+            }
+        });
+    }
+
+    /**
+     * Synthesizes a location and then, in parallel, each of its sublocations.
+     */
+    @RequiredArgsConstructor
+    private class LocationTask extends RecursiveAction {
+        private final Location location;
+
+        /**
+         * Locations already handled. A location with several parents is only synthesized once.
+         */
+        private final Set<Location> visited;
+        private final AgentSink sink;
+
+        @Override
+        protected void compute() {
+            if (!visited.add(location)) {
+                return;
+            }
+            List<LocationTask> children = data
+                    .getDirectSubLocations(location.getId())
+                    .stream()
+                    .map(child -> new LocationTask(child, visited, sink))
+                    .collect(Collectors.toList());
+            children.forEach(LocationTask::fork);
+            synthesize(location, sink);
+            children.forEach(LocationTask::join);
+        }
+    }
+}
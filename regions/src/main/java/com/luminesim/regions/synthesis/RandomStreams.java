@@ -0,0 +1,49 @@
+package com.luminesim.regions.synthesis;
+
+import lombok.NonNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives independent, reproducible random number streams from a single seed.
+ *
+ * @apiNote
+ *  Giving each unit of work (e.g. each location) its own stream keeps results identical no matter how work is
+ *  split across threads.
+ */
+public final class RandomStreams {
+
+    private RandomStreams() {
+    }
+
+    /**
+     * @return
+     *  A random number generator that depends only on the seed and the key.
+     */
+    public static SplittableRandom forKey(long seed, @NonNull String key) {
+        // 64-bit FNV-1a over the key's characters.
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i += 1) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return forKey(seed, hash);
+    }
+
+    /**
+     * @return
+     *  A random number generator that depends only on the seed and the key.
+     */
+    public static SplittableRandom forKey(long seed, long key) {
+        return new SplittableRandom(mix(seed + 0x9e3779b97f4a7c15L * mix(key)));
+    }
+
+    /**
+     * @see <a href="https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp">MurmurHash3's fmix64</a>
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,44 @@
+package com.luminesim.regions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link AgeBins}
+ */
+public class AgeBinsTest {
+
+    /**
+     * Counting over many bands at once should give exactly the same (unrounded) counts as counting each band
+     * separately, even when bands cut bins into fractions on both sides.
+     */
+    @Test
+    public void countsOver_shouldMatchCountExactly() {
+        SplittableRandom rng = new SplittableRandom(7);
+        for (int trial = 0; trial < 200; trial += 1) {
+            AgeBins bins = new AgeBins();
+            int age = 0;
+            while (age < 100) {
+                int width = 1 + rng.nextInt(9);
+                bins.put(age, age + width, rng.nextInt(1_000_000));
+                age += width;
+            }
+            int[] edges = new int[2 + rng.nextInt(8)];
+            edges[0] = rng.nextInt(5);
+            for (int i = 1; i < edges.length; i += 1) {
+                edges[i] = edges[i - 1] + 1 + rng.nextInt(25);
+            }
+
+            double[] counts = bins.countsOver(AgeBins.bands(edges));
+            for (int i = 0; i + 1 < edges.length; i += 1) {
+                assertEquals(
+                        bins.count(edges[i], edges[i + 1]),
+                        counts[i],
+                        "Band [" + edges[i] + ", " + edges[i + 1] + ") must match a single count exactly.");
+            }
+        }
+    }
+}
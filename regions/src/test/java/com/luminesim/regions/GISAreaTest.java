@@ -2,7 +2,10 @@ package com.luminesim.regions;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests {@link GISArea}
@@ -24,4 +27,58 @@ public class GISAreaTest {
         area.addPoint(5,6);
         assertEquals(30, area.area(), "Area must be correct.");
     }
+
+    /**
+     * Containment should agree with Java's own geometry, including for concave areas, and follow added points.
+     */
+    @Test
+    public void contains_shouldMatchArea() {
+        double[][] points = {{0, 0}, {10, 0}, {10, 10}, {5, 3}, {0, 10}};
+        GISArea area = new GISArea("Test");
+        Path2D path = new Path2D.Double();
+        for (double[] point : points) {
+            area.addPoint(point[0], point[1]);
+            if (path.getCurrentPoint() == null) {
+                path.moveTo(point[0], point[1]);
+            }
+            else {
+                path.lineTo(point[0], point[1]);
+            }
+        }
+        Area expected = new Area(path);
+        for (double x = -1; x <= 11; x += 0.25) {
+            for (double y = -1; y <= 11; y += 0.25) {
+                assertEquals(expected.contains(x, y), area.contains(x, y), "Wrong containment at " + x + ", " + y);
+            }
+        }
+
+        // The notch is outside, and added points extend the area.
+        assertFalse(area.contains(5, 8), "The notch must be outside the area.");
+        area.addPoint(0, 12);
+        area.addPoint(-1, 12);
+        assertTrue(area.contains(-0.5, 11), "Added points must be included.");
+    }
+
+    /**
+     * Regions should intersect only when they share some area.
+     */
+    @Test
+    public void intersects_shouldRequireSharedArea() {
+        GISArea a = square(0, 0, 2);
+        assertTrue(a.intersects(square(1, 1, 2)), "Overlapping squares intersect.");
+        assertFalse(a.intersects(square(2, 0, 2)), "Squares sharing only an edge do not intersect.");
+        assertFalse(a.intersects(square(5, 5, 1)), "Distant squares do not intersect.");
+        GISArea point = new GISArea("Point");
+        point.addPoint(1, 1);
+        assertTrue(a.intersects(point) && point.intersects(a), "Regions intersect the points they contain.");
+    }
+
+    private static GISArea square(double x, double y, double size) {
+        GISArea result = new GISArea("Square");
+        result.addPoint(x, y);
+        result.addPoint(x + size, y);
+        result.addPoint(x + size, y + size);
+        result.addPoint(x, y + size);
+        return result;
+    }
 }
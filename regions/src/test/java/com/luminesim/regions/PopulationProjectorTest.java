@@ -0,0 +1,95 @@
+package com.luminesim.regions;
+
+import com.luminesim.qa.InvalidPreconditionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link PopulationProjector}
+ */
+public class PopulationProjectorTest {
+
+    /**
+     * With no deaths or births, a year's worth of each bin should move to the next bin, and the oldest bin should
+     * keep everyone.
+     */
+    @Test
+    public void project_shouldAgeEveryone() {
+        Population<String> result = PopulationProjector.<String>builder().build().project(population());
+        assertEquals(90, result.getCount("All", 0, 10), "A tenth of the youngest bin should have aged out.");
+        assertEquals(110, result.getCount("All", 10, 20), "The oldest bin should gain everyone ageing in.");
+        assertEquals(200, result.size(), "No one should be lost.");
+    }
+
+    /**
+     * Deaths and births should be applied alongside ageing.
+     */
+    @Test
+    public void project_shouldApplyMortalityAndFertility() {
+        PopulationProjector<String> projector = PopulationProjector.<String>builder()
+                .mortality("All", new double[]{0.5})
+                .fertility("All", new double[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0.1})
+                .birthShare("All", 1.0)
+                .build();
+        Population<String> result = projector.project(population());
+        assertEquals(45 + 10, result.getCount("All", 0, 10), "Survivors and births should be in the youngest bin.");
+        assertEquals(55, result.getCount("All", 10, 20), "Only survivors should be in the oldest bin.");
+
+        List<Population<String>> all = projector.projectAll(Arrays.asList(population(), population()), 2);
+        assertEquals(2, all.size(), "Every population should be projected.");
+        assertEquals(projector.project(projector.project(population())).size(), all.get(1).size(), "Multiple years should match repeated projection.");
+    }
+
+    /**
+     * People ageing into a gap between bins should move to the next bin, and the total should only change by
+     * deaths and births, even over many years.
+     */
+    @Test
+    public void project_shouldConservePeopleAcrossGaps() {
+        Population<String> gapped = new Population<>();
+        gapped.put("All", 0, 5, 100);
+        gapped.put("All", 10, 15, 100);
+        Population<String> aged = PopulationProjector.<String>builder().build().project(gapped);
+        assertEquals(200, aged.size(), "No one should be lost in the gap.");
+        assertEquals(80, aged.getCount("All", 0, 5), "A fifth of the youngest bin should have aged out.");
+        assertEquals(120, aged.getCount("All", 10, 15), "People ageing into the gap should be in the next bin.");
+
+        PopulationProjector<String> projector = PopulationProjector.<String>builder()
+                .mortality("All", new double[]{0.01})
+                .fertility("All", new double[]{0.01})
+                .birthShare("All", 1.0)
+                .build();
+        assertEquals(200, projector.project(gapped, 30).size(), "Equal births and deaths should keep the total.");
+        PopulationProjector<String> dying = PopulationProjector.<String>builder().mortality("All", new double[]{0.03}).build();
+        assertEquals(Math.round(200 * Math.pow(0.97, 30)), dying.project(gapped, 30).size(), "Only deaths should reduce the total.");
+
+        Population<String> same = projector.project(gapped, 0);
+        assertNotSame(gapped, same, "Projecting no years should still give a new population.");
+        same.put("All", 0, 5, 1);
+        assertEquals(200, gapped.size(), "Changing the result must not change the original.");
+    }
+
+    /**
+     * Zero-width bins cannot hold anyone once spread over single-year ages, so they are rejected.
+     */
+    @Test
+    public void project_shouldRejectZeroWidthBins() {
+        Population<String> population = population();
+        population.put("All", 20, 20, 5);
+        assertThrows(InvalidPreconditionException.class, () -> PopulationProjector.<String>builder().build().project(population),
+                "Zero-width bins must be rejected.");
+    }
+
+    private Population<String> population() {
+        Population<String> population = new Population<>();
+        population.put("All", 0, 10, 100);
+        population.put("All", 10, 20, 100);
+        return population;
+    }
+}
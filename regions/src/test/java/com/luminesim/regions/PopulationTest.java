@@ -1,7 +1,14 @@
 package com.luminesim.regions;
 
+import com.luminesim.qa.InvalidPreconditionException;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -105,4 +112,292 @@ public class PopulationTest {
 
         assertFalse(A.entirelyContains(B), "A should NOT contain B!");
     }
+
+    /**
+     * Counts over a range should pro-rate any partially-overlapped bins and round down.
+     */
+    @Test
+    public void getCount_shouldProRatePartialBins() {
+        Population<String> A = new Population<>();
+        A.put("Male", 0, 10, 10);
+        A.put("Male", 10, 20, 20);
+        A.put("Male", 20, 40, 40);
+        A.put("Female", 0, 20, 30);
+
+        assertEquals(30, A.getCount("Male", 0, 20), "Whole bins should be counted exactly.");
+        assertEquals(25, A.getCount("Male", 5, 20), "Partial bins at the start of the range should be pro-rated.");
+        assertEquals(20, A.getCount("Male", 15, 25), "Partial bins at both ends of the range should be pro-rated.");
+        assertEquals(4, A.getCount("Male", 21, 23), "A range inside a single bin should be pro-rated.");
+        assertEquals(0, A.getCount("Male", 40, 100), "Ranges outside all bins should be empty.");
+        assertEquals(0, A.getCount("Other", 0, 100), "Unknown segments should be empty.");
+        assertEquals(47, A.getCount(5, 20), "Counts across segments should be summed before rounding.");
+
+        // Overlapping bins are unusual, but each should still contribute.
+        A.put("Male", 5, 15, 10);
+        assertEquals(40, A.getCount("Male", 0, 20), "Overlapping bins should each contribute.");
+        assertEquals(15, A.getCount("Male", 12, 18), "Overlapping bins should each be pro-rated.");
+    }
+
+    /**
+     * Totals should stay correct as bins are added and replaced.
+     */
+    @Test
+    public void size_shouldTrackReplacedBins() {
+        Population<String> A = new Population<>();
+        assertTrue(A.isEmpty(), "A new population should be empty.");
+
+        A.put("Male", 0, 10, 10);
+        A.put("Female", 0, 10, 15);
+        A.put("Male", 10, 20, 5);
+        assertEquals(30, A.size(), "Size should include all segments.");
+        assertEquals(15, A.size("Male"), "Segment size should include all of the segment's bins.");
+
+        A.put("Male", 0, 10, 1);
+        assertEquals(21, A.size(), "Replacing a bin should replace its count in the total.");
+        assertEquals(6, A.size("Male"), "Replacing a bin should replace its count in the segment total.");
+        assertEquals(0, A.size("Other"), "Unknown segments should be empty.");
+
+        A.put("Male", 0, 10, 0);
+        A.put("Male", 10, 20, 0);
+        A.put("Female", 0, 10, 0);
+        assertTrue(A.isEmpty(), "A population of zero counts should be empty.");
+    }
+
+    /**
+     * Excluding several populations at once should match excluding them one at a time.
+     */
+    @Test
+    public void excludeAll_shouldMatchChainedExclusion() {
+        Population<String> A = new Population<>();
+        A.put("All", 0, 20, 40);
+        A.put("All", 20, 40, 40);
+        A.put("All", 40, 60, 40);
+        A.put("Other", 0, 100, 10);
+        A.setAttribute("Is Urban", "true");
+
+        Population<String> B = new Population<>();
+        B.put("All", 0, 30, 15);
+        B.put("All", 50, 70, 30);
+
+        Population<String> C = new Population<>();
+        C.put("All", 10, 20, 35);
+        C.put("All", 35, 45, 10);
+        C.put("Other", 0, 50, 4);
+
+        Population<String> chained = A.excluding(B).excluding(C);
+        Population<String> swept = A.excludingAll(Arrays.asList(B, C));
+        for (int s = 0, e = 20; e <= 60; s += 20, e += 20) {
+            assertEquals(chained.getCount("All", s, e), swept.getCount("All", s, e), "Counts should match chained exclusion.");
+        }
+        assertEquals(chained.getCount("Other", 0, 100), swept.getCount("Other", 0, 100), "Counts should match chained exclusion.");
+        assertEquals(0, swept.getCount("All", 0, 20), "Counts should not drop below zero.");
+        assertEquals(chained.size(), swept.size(), "Sizes should match chained exclusion.");
+        assertTrue(swept.getBoolean("Is Urban"), "Attributes should be kept.");
+    }
+
+    /**
+     * B cannot be contained by A if it has people in age ranges that A does not cover.
+     */
+    @Test
+    public void testEntirelyContains_shouldDetectBOutsideOfA() {
+        Population<String> A = new Population<>();
+        A.put("All", 0, 20, 40);
+        A.put("All", 40, 60, 40);
+
+        Population<String> B = new Population<>();
+        B.put("All", 0, 10, 10);
+        B.put("All", 25, 35, 10);
+        assertFalse(A.entirelyContains(B), "A should NOT contain B (age range).");
+
+        Population<String> C = new Population<>();
+        C.put("Other", 0, 10, 1);
+        assertFalse(A.entirelyContains(C), "A should NOT contain C (segment).");
+    }
+
+    /**
+     * Checking many populations at once should agree with checking and excluding them one at a time.
+     */
+    @Test
+    public void entirelyContainsAll_shouldMatchChainedChecks() {
+        Population<String> A = new Population<>();
+        A.put("All", 0, 20, 40);
+        A.put("All", 20, 40, 40);
+
+        Population<String> B = new Population<>();
+        B.put("All", 0, 10, 15);
+        Population<String> C = new Population<>();
+        C.put("All", 5, 15, 20);
+        Population<String> D = new Population<>();
+        D.put("All", 10, 20, 10);
+        Population<String> E = new Population<>();
+        E.put("Other", 0, 10, 1);
+
+        assertTrue(A.entirelyContainsAll(Arrays.asList(B, C)), "A should contain B and C together.");
+        assertTrue(A.excluding(B).entirelyContains(C), "Chained check should agree.");
+        assertFalse(A.entirelyContainsAll(Arrays.asList(B, C, D)), "A should NOT contain B, C and D together.");
+        assertFalse(A.excluding(B).excluding(C).entirelyContains(D), "Chained check should agree.");
+        assertFalse(A.entirelyContainsAll(Arrays.asList(B, E)), "A should NOT contain E (segment).");
+        assertTrue(A.entirelyContainsAll(Collections.emptyList()), "Everything contains nothing.");
+    }
+
+    /**
+     * Typed attribute reads should match parsing the text, whether read by name or by key.
+     */
+    @Test
+    public void attributes_shouldBeReadTyped() {
+        Population<String> A = new Population<>();
+        A.setAttribute("Is Rural", "TRUE");
+        A.setAttribute("Number of Partnered Men", "1000.7");
+        A.setAttribute("Label", "North");
+        AttributeKey men = AttributeKey.of("Number of Partnered Men");
+
+        assertTrue(A.getBoolean("Is Rural"), "Wrong boolean.");
+        assertTrue(A.getBoolean(AttributeKey.of("Is Rural")), "Wrong boolean by key.");
+        assertEquals(1000.7, A.getNumber(men), "Wrong number by key.");
+        assertEquals(1000, A.getInteger("Number of Partnered Men"), "Wrong integer.");
+        assertEquals("North", A.getString(AttributeKey.of("Label")), "Wrong text by key.");
+        assertFalse(A.getBoolean("Never Set"), "Missing booleans are false.");
+        assertEquals(0, A.getNumber("Never Set"), "Missing numbers are zero.");
+        assertThrows(NumberFormatException.class, () -> A.getNumber("Label"), "Text is not a number.");
+
+        A.setAttribute("Number of Partnered Men", "12");
+        assertEquals(12, A.getNumber(men), "Changed attributes must be re-parsed.");
+        assertEquals("12", A.freeze().getString("Number of Partnered Men"), "Frozen copies keep attributes.");
+    }
+
+    /**
+     * Sampling should follow the population's distribution and be reproducible for a given seed.
+     */
+    @Test
+    public void sample_shouldFollowDistributionAndBeReproducible() {
+        Population<String> A = new Population<>();
+        A.put("Male", 0, 10, 100);
+        A.put("Male", 10, 20, 300);
+        A.put("Female", 60, 80, 600);
+
+        int n = 100_000;
+        int[] tally = new int[3];
+        List<Double> ages = new ArrayList<>();
+        A.sample(n, new SplittableRandom(42), (segment, age) -> {
+            ages.add(age);
+            if (segment.equals("Female")) {
+                assertTrue(age >= 60 && age < 80, "Ages must fall within their bin.");
+                tally[2] += 1;
+            }
+            else {
+                assertTrue(age >= 0 && age < 20, "Ages must fall within their bin.");
+                tally[age < 10 ? 0 : 1] += 1;
+            }
+        });
+        assertEquals(0.1, tally[0] / (double) n, 0.01, "Wrong share drawn from the first bin.");
+        assertEquals(0.3, tally[1] / (double) n, 0.01, "Wrong share drawn from the second bin.");
+        assertEquals(0.6, tally[2] / (double) n, 0.01, "Wrong share drawn from the third bin.");
+
+        List<Double> again = new ArrayList<>();
+        A.sample(n, new SplittableRandom(42), (segment, age) -> again.add(age));
+        assertEquals(ages, again, "The same seed must produce the same draws.");
+    }
+
+    /**
+     * A frozen population should keep its counts and attributes, share interned segments, and reject changes.
+     */
+    @Test
+    public void freeze_shouldCopyAndRejectChanges() {
+        SegmentDictionary<String> segments = new SegmentDictionary<>();
+        Population<String> A = new Population<>();
+        A.put("Male", 0, 10, 10);
+        A.put("Female", 0, 10, 20);
+        A.setAttribute("Is Rural", "true");
+
+        Population<String> frozen = A.freeze(segments);
+        A.put("Male", 0, 10, 500);
+        assertTrue(frozen.isFrozen(), "Population should be frozen.");
+        assertFalse(A.isFrozen(), "Original should not be frozen.");
+        assertEquals(30, frozen.size(), "Frozen population should not see later changes.");
+        assertEquals(20, frozen.getCount("Female", 0, 10), "Frozen population should keep its counts.");
+        assertTrue(frozen.getBoolean("Is Rural"), "Frozen population should keep its attributes.");
+        assertSame(segments, frozen.getSegmentDictionary(), "Frozen population should use the given dictionary.");
+        assertEquals(2, segments.size(), "Segments should be interned.");
+        assertSame(frozen, frozen.freeze(segments), "Freezing twice should not copy.");
+
+        assertThrows(InvalidPreconditionException.class, () -> frozen.put("Male", 10, 20, 1), "Frozen populations cannot change.");
+        assertThrows(InvalidPreconditionException.class, () -> frozen.setAttribute("Is Rural", "false"), "Frozen populations cannot change.");
+
+        // Frozen and unfrozen populations should still combine.
+        assertTrue(A.entirelyContains(frozen), "Populations with different dictionaries should still be comparable.");
+        assertEquals(490, A.excluding(frozen).getCount("Male", 0, 10), "Populations with different dictionaries should still combine.");
+    }
+
+    /**
+     * Re-binning should give the same counts as querying each band separately.
+     */
+    @Test
+    public void rebin_shouldMatchPerBandCounts() {
+        Population<String> A = new Population<>();
+        A.put("Male", 0, 5, 50);
+        A.put("Male", 5, 15, 100);
+        A.put("Male", 15, 30, 90);
+        A.put("Male", 30, 100, 700);
+        A.put("Female", 0, 100, 1000);
+        A.setAttribute("Is Urban", "true");
+
+        int[] edges = {0, 5, 18, 65, 120};
+        Population<String> rebinned = A.rebin(edges);
+        int[] all = A.getCounts(edges);
+        int[] male = A.getCounts("Male", edges);
+        for (int i = 0; i + 1 < edges.length; i += 1) {
+            int start = edges[i];
+            int end = edges[i + 1];
+            assertEquals(A.getCount("Male", start, end), rebinned.getCount("Male", start, end), "Re-binned counts should match.");
+            assertEquals(A.getCount("Female", start, end), rebinned.getCount("Female", start, end), "Re-binned counts should match.");
+            assertEquals(A.getCount("Male", start, end), male[i], "Per-segment band counts should match.");
+            assertEquals(A.getCount(start, end), all[i], "Band counts should match.");
+        }
+        assertTrue(rebinned.getBoolean("Is Urban"), "Attributes should be kept.");
+        assertArrayEquals(new int[4], A.getCounts("Other", edges), "Unknown segments should be empty.");
+        assertThrows(InvalidPreconditionException.class, () -> A.rebin(new int[]{0, 10, 10}), "Edges must increase.");
+    }
+
+    /**
+     * Adding populations should keep every person, even when the populations use different age bins,
+     * should not depend on how the additions are grouped, and should not leave overlapping bins.
+     */
+    @Test
+    public void plus_shouldBeExactAndAssociative() {
+        Population<String> A = new Population<>();
+        A.put("All", 0, 20, 40);
+        A.put("All", 20, 40, 40);
+
+        Population<String> B = new Population<>();
+        B.put("All", 0, 20, 10);
+        B.put("All", 20, 30, 10);
+        B.put("Male", 0, 100, 7);
+
+        Population<String> C = new Population<>();
+        C.put("All", 10, 15, 5);
+
+        Population<String> left = A.plus(B).plus(C);
+        Population<String> right = A.plus(B.plus(C));
+        Population<String> summed = Population.sum(Arrays.asList(A, B, C));
+        for (Population<String> result : Arrays.asList(left, right, summed)) {
+            assertEquals(A.size() + B.size() + C.size(), result.size(), "No one should be lost.");
+            assertEquals(55, result.getCount("All", 0, 20), "Matching bins should be added.");
+            assertEquals(50, result.getCount("All", 20, 40), "Differing bins should be kept.");
+            assertEquals(30, result.getCount("All", 10, 20), "Counts over any range should be the sum of each population's counts.");
+            assertEquals(7, result.getCount("Male", 0, 100), "Segments in only one population should be kept.");
+            assertTrue(result.binsAt(result.getSegmentDictionary().indexOf("All")).isDisjoint(), "Differing bins should be split, not overlapped.");
+        }
+        assertEquals(A.plus(B).toString(), B.plus(A).toString(), "Order should not matter.");
+
+        Population<String> odd = new Population<>();
+        odd.put("All", 0, 3, 1);
+        Population<String> cut = new Population<>();
+        cut.put("All", 1, 2, 5);
+        Population<String> split = odd.plus(cut);
+        assertEquals(6, split.size(), "Rounding split bins should not lose anyone.");
+        assertEquals(6, split.getCount("All", 0, 3), "Split bins should keep their count.");
+        assertTrue(split.binsAt(split.getSegmentDictionary().indexOf("All")).isDisjoint(), "Differing bins should be split, not overlapped.");
+        assertTrue(Population.<String>sum(Arrays.asList()).isEmpty(), "The sum of nothing should be empty.");
+        assertEquals(80, A.size(), "Operands should be unchanged.");
+    }
 }
@@ -4,6 +4,7 @@ import static com.luminesim.regions.POIGroup.POIType.SecondarySchool;
 import static com.luminesim.regions.POIGroup.POIType.Workplace;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.luminesim.qa.InvalidPreconditionException;
 import com.luminesim.regions.io.RegionDatasetReader;
 import org.junit.jupiter.api.Test;
 
@@ -12,6 +13,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Tests {@link RegionDataset} and related classes.
@@ -180,6 +182,318 @@ public class RegionDatasetTest {
         assertEquals(1000, data.getPopulation("CensusRegion-Unity").getNumber("Number of Partnered Men"));
     }
 
+    /**
+     * Remembered exclusive populations must follow changes to populations and the hierarchy.
+     */
+    @Test
+    void getExclusivePopulation_shouldFollowChanges() {
+        RegionDataset data = new RegionDataset();
+        data.addLocation(new Location("A", "A"));
+        data.addLocation(new Location("B", "B"));
+        data.addLocation(new Location("C", "C"));
+        data.addChild("A", "B");
+        data.setPopulation("A", "All", 0, 10, 100);
+        data.setPopulation("B", "All", 0, 10, 30);
+        data.setPopulation("C", "All", 0, 10, 20);
+        data.precomputeExclusivePopulations();
+        assertEquals(70, data.getExclusivePopulation("A").size(), "Wrong exclusive population.");
+        assertSame(data.getExclusivePopulation("A"), data.getExclusivePopulation("A"), "Result should be remembered.");
+
+        data.setPopulation("B", "All", 0, 10, 40);
+        assertEquals(60, data.getExclusivePopulation("A").size(), "Changing a child's population must be seen.");
+        data.addChild("A", "C");
+        assertEquals(40, data.getExclusivePopulation("A").size(), "Adding a child must be seen.");
+        data.setPopulation("A", "All", 0, 10, 90);
+        assertEquals(30, data.getExclusivePopulation("A").size(), "Changing the population must be seen.");
+
+        Population<String> leaf = data.getExclusivePopulation("B");
+        assertNotSame(data.getPopulation("B"), leaf, "Leaves must not expose their live population.");
+        assertThrows(InvalidPreconditionException.class, () -> leaf.put("All", 0, 10, 1), "Exclusive populations must be frozen.");
+        data.setPopulation("B", "All", 0, 10, 50);
+        assertEquals(40, leaf.size(), "Earlier results must not change.");
+        assertEquals(50, data.getExclusivePopulation("B").size(), "Changing a leaf's population must be seen.");
+    }
+
+    /**
+     * Sublocation and ancestor queries must visit each location once, even when a location has several parents.
+     */
+    @Test
+    void hierarchyQueries_shouldHandleSharedChildren() {
+        // A -> B -> D -> E, A -> C -> D, and F on its own.
+        RegionDataset data = new RegionDataset();
+        for (String id : Arrays.asList("A", "B", "C", "D", "E", "F")) {
+            data.addLocation(new Location(id, id));
+        }
+        data.addChild("A", "B");
+        data.addChild("A", "C");
+        data.addChild("B", "D");
+        data.addChild("C", "D");
+        data.addChild("D", "E");
+
+        List<String> under = new ArrayList<>();
+        data.forEachSubLocation("A", location -> under.add(location.getId()));
+        assertEquals(4, under.size(), "Each sublocation must be visited once: " + under);
+        assertEquals(set("B", "C", "D", "E"), new HashSet<>(under), "Wrong sublocations.");
+        assertEquals(set("B", "C", "D", "E"), set(data.getAllSubLocations("A"), Location::getId), "Wrong sublocations.");
+
+        List<String> above = new ArrayList<>();
+        data.forEachParentLocation("E", location -> above.add(location.getId()));
+        assertEquals(4, above.size(), "Each ancestor must be visited once: " + above);
+        assertEquals(set("A", "B", "C", "D"), new HashSet<>(above), "Wrong ancestors.");
+
+        assertTrue(data.isSubLocation("E", "A"), "E is under A.");
+        assertTrue(data.isSubLocation("D", "C"), "D is under C.");
+        assertFalse(data.isSubLocation("B", "C"), "B is not under C.");
+        assertFalse(data.isSubLocation("A", "A"), "A location is not under itself.");
+        assertFalse(data.isSubLocation("F", "A"), "F is not under A.");
+
+        data.addChild("F", "A");
+        assertTrue(data.isSubLocation("E", "F"), "The index must follow new links.");
+    }
+
+    /**
+     * Hierarchies that unfold into far more paths than locations should be rejected with a clear error rather than
+     * exhausting memory.
+     */
+    @Test
+    void hierarchyQueries_shouldRejectStackedDiamonds() {
+        // Each level has two locations, both under both locations of the level above: 2^levels paths.
+        RegionDataset data = new RegionDataset();
+        data.addLocation(new Location("Root", "Root"));
+        String[] above = {"Root"};
+        for (int level = 0; level < 70; level += 1) {
+            String[] here = {level + "L", level + "R"};
+            for (String id : here) {
+                data.addLocation(new Location(id, id));
+                for (String parent : above) {
+                    data.addChild(parent, id);
+                }
+            }
+            above = here;
+        }
+        InvalidPreconditionException e = assertThrows(
+                InvalidPreconditionException.class,
+                () -> data.isSubLocation("69L", "Root"),
+                "Hierarchies with too many paths must be rejected.");
+        assertTrue(e.getMessage().contains("share too many parents"), "The error should say why: " + e.getMessage());
+    }
+
+    /**
+     * Index-based queries should agree with ID-based ones.
+     */
+    @Test
+    void indexQueries_shouldMatchIdQueries() throws Throwable {
+        RegionDataset data = RegionDatasetReader.read(
+                Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        assertEquals(data.getLocations().size(), data.getLocationCount(), "Wrong location count.");
+        for (Location location : data.getLocations()) {
+            int index = data.getIndex(location.getId());
+            assertSame(location, data.getLocation(index), "Index must map back to the location.");
+            assertEquals(data.hasPopulation(location), data.hasPopulation(index), "Population presence differs.");
+            assertEquals(data.getPOIGroups(location), data.getPOIGroups(index), "POI groups differ.");
+            assertEquals(
+                    data.getTotalPopulationSize(location.getId(), 0, 120),
+                    data.getTotalPopulationSize(index, 0, 120),
+                    "Population sizes differ.");
+            if (data.hasPopulation(index)) {
+                assertSame(data.getPopulation(location), data.getPopulation(index), "Populations differ.");
+            }
+        }
+    }
+
+    /**
+     * A frozen snapshot should answer queries like the original, reject changes, and not see later changes to the
+     * original.
+     */
+    @Test
+    void freeze_shouldProduceIndependentImmutableSnapshot() throws Throwable {
+        RegionDataset data = RegionDatasetReader.read(
+                Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        RegionDataset frozen = data.freeze();
+
+        assertTrue(frozen.isFrozen(), "Snapshot must be frozen.");
+        assertSame(frozen, frozen.freeze(), "Freezing a snapshot should return it.");
+        assertEquals(
+                data.getExclusivePopulationSize("CensusRegion-Unity", 40, 80),
+                frozen.getExclusivePopulationSize("CensusRegion-Unity", 40, 80),
+                "Snapshot must have the same populations.");
+        assertEquals(
+                data.getAllSubLocations("CensusRegion-Unity"),
+                frozen.getAllSubLocations("CensusRegion-Unity"),
+                "Snapshot must have the same hierarchy.");
+        for (Location location : data.getLocations()) {
+            int index = data.getIndex(location.getId());
+            assertEquals(index, frozen.getIndex(location.getId()), "Snapshot must keep location indices.");
+            assertEquals(data.hasPopulation(location), frozen.hasPopulation(location), "Snapshot must have the same populations.");
+            assertEquals(
+                    new ArrayList<>(data.getDirectSubLocations(index)),
+                    new ArrayList<>(frozen.getDirectSubLocations(index)),
+                    "Snapshot must have the same direct sublocations.");
+        }
+        assertEquals(set(data.getRootLocations(), Location::getId), set(frozen.getRootLocations(), Location::getId), "Snapshot must have the same roots.");
+        assertFalse(frozen.hasLocation("Nowhere"), "Snapshot must not find unknown locations.");
+        assertEquals(
+                data.getLocation("Unity-UCHS").getBoolean("IsHighSchool"),
+                frozen.getLocation("Unity-UCHS").getBoolean("IsHighSchool"),
+                "Snapshot must have the same attributes.");
+
+        assertThrows(InvalidPreconditionException.class, () -> frozen.addLocation(new Location("X", "X")), "Frozen datasets cannot change.");
+        assertThrows(InvalidPreconditionException.class, () -> frozen.setPopulation("Unity-UCHS", "All", 0, 10, 1), "Frozen datasets cannot change.");
+        assertThrows(InvalidPreconditionException.class, () -> frozen.getLocation("Unity-UCHS").setAttribute("IsHighSchool", "false"), "Frozen locations cannot change.");
+        assertThrows(InvalidPreconditionException.class, () -> frozen.getArea("Unity-UCHS").addPoint(0, 0), "Frozen areas cannot change.");
+        assertThrows(InvalidPreconditionException.class, () -> frozen.getPopulation("CensusRegion-Unity").put("All", 0, 10, 1), "Frozen populations cannot change.");
+
+        int before = frozen.getTotalPopulationSize("CensusRegion-Unity", 0, 120);
+        data.setPopulation("CensusRegion-Unity", "New", 0, 10, 100);
+        data.getLocation("Unity-UCHS").setAttribute("IsHighSchool", "false");
+        assertEquals(before, frozen.getTotalPopulationSize("CensusRegion-Unity", 0, 120), "Snapshot must not see later changes.");
+        assertTrue(frozen.getLocation("Unity-UCHS").getBoolean("IsHighSchool"), "Snapshot must not see later changes.");
+    }
+
+    /**
+     * Bulk links should be validated together, naming any cycle and leaving the dataset unchanged.
+     */
+    @Test
+    void addChildren_shouldRejectCyclesWithoutChanges() {
+        RegionDataset data = new RegionDataset();
+        for (String id : Arrays.asList("A", "B", "C", "D")) {
+            data.addLocation(new Location(id, id));
+        }
+        data.addChildren(new String[]{"A", "B"}, new String[]{"B", "C"});
+        assertTrue(data.isSubLocation("C", "A"), "Bulk links must be added.");
+        assertThrows(InvalidPreconditionException.class, () -> data.addChild("C", "A"), "Single links must not create cycles.");
+
+        InvalidPreconditionException e = assertThrows(
+                InvalidPreconditionException.class,
+                () -> data.addChildren(new String[]{"A", "C"}, new String[]{"D", "B"}),
+                "Bulk links must not create cycles.");
+        assertTrue(e.getMessage().contains("B -> C -> B"), "The cycle should be named: " + e.getMessage());
+        assertEquals(set("B"), set(data.getDirectSubLocations("A"), Location::getId), "Failed links must be undone.");
+        assertEquals(set("C"), set(data.getDirectSubLocations("B"), Location::getId), "Failed links must be undone.");
+        assertEquals(set("A", "D"), set(data.getRootLocations(), Location::getId), "Failed links must be undone.");
+
+        assertThrows(
+                InvalidPreconditionException.class,
+                () -> data.addChildren(new String[]{"A", "A"}, new String[]{"D", "D"}),
+                "Bulk links must not be repeated.");
+        assertThrows(
+                InvalidPreconditionException.class,
+                () -> data.addChildren(new String[]{"C", "A"}, new String[]{"D", "B"}),
+                "Bulk links must not repeat existing links.");
+        assertThrows(
+                InvalidPreconditionException.class,
+                () -> data.addChildren(new String[]{"C", "A"}, new String[]{"D"}),
+                "Each bulk link needs a parent and a child.");
+        assertEquals(Arrays.asList("B"), data.getDirectSubLocations("A").stream().map(Location::getId).collect(Collectors.toList()), "Failed links must be undone.");
+        assertEquals(set("A", "D"), set(data.getRootLocations(), Location::getId), "Failed links must be undone.");
+    }
+
+    /**
+     * Population matrices should match asking for each location and age band separately.
+     */
+    @Test
+    void getTotalPopulationMatrix_shouldMatchSingleQueries() throws Throwable {
+        RegionDataset data = RegionDatasetReader.read(
+                Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        List<String> ids = data.getLocations().stream().map(Location::getId).collect(Collectors.toList());
+        int[] edges = {0, 5, 18, 40, 65, 73, 120};
+
+        int[][] matrix = data.getTotalPopulationMatrix(ids, edges);
+        assertEquals(ids.size(), matrix.length, "Need one row per location.");
+        for (int i = 0; i < ids.size(); i += 1) {
+            for (int b = 0; b < edges.length - 1; b += 1) {
+                assertEquals(
+                        data.getTotalPopulationSize(ids.get(i), edges[b], edges[b + 1]),
+                        matrix[i][b],
+                        "Wrong count for " + ids.get(i) + " in band " + b);
+            }
+        }
+
+        String segment = data.getPopulation("CensusRegion-Unity").getSegmentDictionary().get(0);
+        int[][] bySegment = data.getTotalPopulationMatrix(Collections.singletonList("CensusRegion-Unity"), segment, edges);
+        assertArrayEquals(data.getPopulation("CensusRegion-Unity").getCounts(segment, edges), bySegment[0], "Wrong segment counts.");
+    }
+
+    /**
+     * Attribute lookups should find matching locations and follow attribute changes.
+     */
+    @Test
+    void attributeQueries_shouldFollowChanges() throws Throwable {
+        RegionDataset data = RegionDatasetReader.read(
+                Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        assertEquals(
+                set("Unity-UCHS"),
+                set(data.getLocationsWhere("IsHighSchool"), Location::getId),
+                "Wrong locations found by boolean attribute.");
+        assertEquals(
+                set("CensusRegion-RoundValleyNo410"),
+                set(data.getLocationsWherePopulation("Is Rural"), Location::getId),
+                "Wrong locations found by population attribute.");
+        assertEquals(
+                set("CensusRegion-Unity"),
+                set(data.getLocationsWithPopulationAttributeBetween("Number of Partnered Men", 500, 1000), Location::getId),
+                "Wrong locations found by numeric population attribute.");
+
+        data.getLocation("Unity-UCHS").setAttribute("IsHighSchool", "false");
+        data.getLocation("Unity-LutherPlace").setAttribute("Beds", "40");
+        data.getLocation("Unity-UCHS").setAttribute("Beds", "12.5");
+        assertTrue(data.getLocationsWhere("IsHighSchool").isEmpty(), "Changed attributes must be followed.");
+        assertEquals(
+                set("Unity-UCHS"),
+                set(data.getLocationsWithAttribute("IsHighSchool", "false"), Location::getId),
+                "Changed attributes must be followed.");
+        assertEquals(
+                set("Unity-LutherPlace"),
+                set(data.getLocationsWithAttributeBetween("Beds", 20, 50), Location::getId),
+                "Wrong locations found by numeric range.");
+        assertEquals(2, data.getLocationIndicesWithAttributeBetween("Beds", 0, 100).cardinality(), "Wrong range size.");
+    }
+
+    /**
+     * Attributes of different locations set from many threads at once should all reach the attribute index.
+     */
+    @Test
+    void attributeQueries_shouldFollowConcurrentChanges() {
+        RegionDataset data = new RegionDataset();
+        int count = 2000;
+        for (int i = 0; i < count; i += 1) {
+            data.addLocation(new Location("L" + i, "L" + i));
+        }
+        IntStream.range(0, count).parallel().forEach(i -> {
+            data.getLocation(i).setAttribute("Zone", i % 2 == 0 ? "Even" : "Odd");
+            data.getLocation(i).setAttribute("Size", Integer.toString(i));
+            data.getLocation(i).setAttribute("Zone", i % 2 == 0 ? "Even" : "Odd");
+        });
+        assertEquals(count / 2, data.getLocationIndicesWithAttribute("Zone", "Even").cardinality(), "Every concurrent change must be indexed.");
+        assertEquals(count / 2, data.getLocationIndicesWithAttribute("Zone", "Odd").cardinality(), "Every concurrent change must be indexed.");
+        assertEquals(count, data.getLocationIndicesWithAttributeBetween("Size", 0, count).cardinality(), "Every concurrent change must be indexed.");
+    }
+
+    /**
+     * Typed reads and the attribute index should agree on which values are numbers.
+     */
+    @Test
+    void attributeQueries_shouldAgreeWithTypedReads() {
+        RegionDataset data = new RegionDataset();
+        String[] values = {" 7 ", "NaN", "1e1", "seven", "true"};
+        for (int i = 0; i < values.length; i += 1) {
+            data.addLocation(new Location("L" + i, "L" + i));
+            data.getLocation(i).setAttribute("Beds", values[i]);
+        }
+        BitSet indexed = data.getLocationIndicesWithAttributeBetween("Beds", Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < values.length; i += 1) {
+            boolean numeric;
+            try {
+                numeric = !Double.isNaN(data.getLocation(i).getNumber("Beds"));
+            }
+            catch (NumberFormatException e) {
+                numeric = false;
+            }
+            assertEquals(numeric, indexed.get(i), "The index and typed reads must agree on " + values[i]);
+        }
+        assertEquals(data.getLocation(4).getBoolean("Beds"), data.getLocationIndicesWhere("Beds").get(4), "The index and typed reads must agree on truth.");
+    }
+
     private <T> Set<T> set(T... items) {
         return new HashSet<>(Arrays.asList(items));
     }
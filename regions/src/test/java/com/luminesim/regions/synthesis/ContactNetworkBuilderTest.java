@@ -0,0 +1,68 @@
+package com.luminesim.regions.synthesis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ContactNetworkBuilder}
+ */
+public class ContactNetworkBuilderTest {
+
+    /**
+     * Small groups should be fully connected and large groups sampled, keeping each member's total weight.
+     */
+    @Test
+    public void build_shouldConnectSmallGroupsFullyAndSampleLargeOnes() {
+        // People 0-2 share a household; people 3-52 share a workplace; person 0 also works there.
+        int[] households = new int[53];
+        int[] workplaces = new int[53];
+        for (int p = 0; p < 53; p += 1) {
+            households[p] = p < 3 ? 0 : -1;
+            workplaces[p] = p >= 3 || p == 0 ? 7 : -1;
+        }
+        ContactNetwork network = new ContactNetworkBuilder(53, 1, 10, 2)
+                .add(ContactContext.Household, 1, households)
+                .add(ContactContext.Workplace, 0.5, workplaces)
+                .build();
+
+        assertEquals(53, network.size(), "Wrong number of people.");
+        assertEquals(2, network.getDegree(1), "Household members should be in contact with each other.");
+        assertEquals(2 + 4, network.getDegree(0), "Person 0 should have household and workplace contacts.");
+        for (int p = 3; p < 53; p += 1) {
+            assertEquals(4, network.getDegree(p), "Workplace members should have two partners on each side.");
+            double total = 0;
+            for (int e = network.getFirst(p); e < network.getEnd(p); e += 1) {
+                assertEquals(ContactContext.Workplace, network.getContext(e), "Wrong context.");
+                assertNotEquals(p, network.getContact(e), "Nobody is in contact with themselves.");
+                total += network.getWeight(e);
+            }
+            assertEquals(0.5 * 50, total, 1e-4, "Sampling must keep each member's total weight.");
+        }
+    }
+
+    /**
+     * Every edge should have a matching edge in the opposite direction, and the same seed the same edges.
+     */
+    @Test
+    public void build_shouldBeSymmetricAndReproducible() {
+        int[] groups = new int[500];
+        for (int p = 0; p < groups.length; p += 1) {
+            groups[p] = p % 7;
+        }
+        ContactNetwork a = new ContactNetworkBuilder(500, 3).add(ContactContext.School, 1, groups).build();
+        ContactNetwork b = new ContactNetworkBuilder(500, 3).add(ContactContext.School, 1, groups).build();
+        assertEquals(a.getEdgeCount(), b.getEdgeCount(), "The same seed must produce the same network.");
+        for (int p = 0; p < a.size(); p += 1) {
+            for (int e = a.getFirst(p); e < a.getEnd(p); e += 1) {
+                assertEquals(a.getContact(e), b.getContact(e), "The same seed must produce the same network.");
+                int q = a.getContact(e);
+                boolean reverse = false;
+                for (int f = a.getFirst(q); f < a.getEnd(q) && !reverse; f += 1) {
+                    reverse = a.getContact(f) == p;
+                }
+                assertTrue(reverse, "Every edge must have a reverse edge.");
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.qa.InvalidPreconditionException;
+import com.luminesim.regions.Location;
+import com.luminesim.regions.RegionDataset;
+import com.luminesim.regions.io.RegionDatasetReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HouseholdFormer}
+ */
+public class HouseholdFormerTest {
+
+    private static RegionDataset data;
+    private static PersonTable people;
+
+    @BeforeAll
+    static void loadDataset() throws Throwable {
+        data = RegionDatasetReader.read(Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        people = new PopulationSynthesizer(data, 5).synthesizeTable();
+    }
+
+    /**
+     * Households should follow the dataset's attributes and stay within their location.
+     */
+    @Test
+    public void form_shouldFollowAttributes() {
+        Households households = HouseholdFormer.standard(data, 1).build().form(people);
+        assertEquals(people.size(), households.size(), "Everyone must have a household.");
+
+        int unity = data.getIndex("CensusRegion-Unity");
+        int couples = 0;
+        int total = 0;
+        for (int h = 0; h < households.getHouseholdCount(); h += 1) {
+            int adults = 0;
+            int location = people.getLocation(households.getMember(households.getFirst(h)));
+            for (int e = households.getFirst(h); e < households.getEnd(h); e += 1) {
+                int person = households.getMember(e);
+                assertEquals(h, households.getHousehold(person), "Members must agree with the household of each person.");
+                assertEquals(location, people.getLocation(person), "Households must not span locations.");
+                adults += people.getAge(person) >= 18 ? 1 : 0;
+                total += 1;
+            }
+            assertTrue(adults <= 2, "Households have at most two adults.");
+            couples += adults == 2 && location == unity ? 1 : 0;
+        }
+        assertEquals(people.size(), total, "Everyone must be listed in exactly one household.");
+        int unityAdults = 0;
+        for (int p = people.getFirst(unity); p < people.getEnd(unity); p += 1) {
+            unityAdults += people.getAge(p) >= 18 ? 1 : 0;
+        }
+        double exclusiveShare = (double) data.getExclusivePopulation(unity).getCount(18, Integer.MAX_VALUE)
+                / data.getPopulation(unity).getCount(18, Integer.MAX_VALUE);
+        assertEquals(
+                Math.min(Math.round(1000 * exclusiveShare), unityAdults / 2),
+                couples,
+                "Unity's number of partnered men, less those in its sublocations, should set its number of couples.");
+
+        int luther = data.getIndex("Unity-LutherPlace");
+        for (int p = people.getFirst(luther); p < people.getEnd(luther); p += 1) {
+            assertEquals(1, households.getHouseholdSize(households.getHousehold(p)), "Assisted living residents live alone.");
+        }
+    }
+
+    /**
+     * Couples should be one man and one woman, and only the location's own share of its partnered men should be
+     * paired there, with the rest in its sublocations.
+     */
+    @Test
+    public void form_shouldPairMenAndWomenInTheLocationsOwnShare() {
+        RegionDataset town = new RegionDataset();
+        town.addLocation(new Location("Town", "Town"));
+        town.addLocation(new Location("Home", "Home"));
+        town.addChild("Town", "Home");
+        town.setPopulation("Town", "Male", 20, 60, 100);
+        town.setPopulation("Town", "Female", 20, 60, 100);
+        town.setPopulation("Home", "Male", 20, 60, 50);
+        town.setPopulation("Home", "Female", 20, 60, 50);
+        town.getPopulation("Town").setAttribute(HouseholdFormer.PARTNERED_MEN, "80");
+        PersonTable residents = new PopulationSynthesizer(town, 2).synthesizeTable();
+
+        Households households = HouseholdFormer.standard(town, 3).build().form(residents);
+        int[] couples = new int[2];
+        for (int h = 0; h < households.getHouseholdCount(); h += 1) {
+            if (households.getHouseholdSize(h) == 2) {
+                int a = households.getMember(households.getFirst(h));
+                int b = households.getMember(households.getFirst(h) + 1);
+                assertNotEquals(residents.getSegment(a), residents.getSegment(b), "Couples should be a man and a woman.");
+                couples[residents.getLocation(a)] += 1;
+            }
+        }
+        assertEquals(40, couples[town.getIndex("Town")], "Half of Town's adults live in Home, and so do half its couples.");
+        assertEquals(25, couples[town.getIndex("Home")], "Without an attribute, half of adults should be in couples.");
+    }
+
+    /**
+     * A child without a plausible parent should join the household whose adult is nearest to a plausible parent's age.
+     */
+    @Test
+    public void form_shouldPlaceChildrenWithTheNearestPlausibleParent() {
+        RegionDataset farm = new RegionDataset();
+        farm.addLocation(new Location("Farm", "Farm"));
+        farm.setPopulation("Farm", "Male", 20, 21, 1);
+        farm.setPopulation("Farm", "Female", 70, 71, 1);
+        farm.setPopulation("Farm", "Male", 5, 6, 1);
+        farm.getPopulation("Farm").setAttribute(HouseholdFormer.PARTNERED_MEN, "0");
+        PersonTable residents = new PopulationSynthesizer(farm, 2).synthesizeTable();
+
+        Households households = HouseholdFormer.standard(farm, 3).build().form(residents);
+        assertEquals(2, households.getHouseholdCount(), "The adults should live apart.");
+        for (int p = 0; p < residents.size(); p += 1) {
+            if (residents.getAge(p) < 18) {
+                int household = households.getHousehold(p);
+                for (int e = households.getFirst(household); e < households.getEnd(household); e += 1) {
+                    assertTrue(residents.getAge(households.getMember(e)) < 70, "The child should live with the 20 year old, 3 years short of a plausible parent, not the 70 year old, 20 years past one.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalid numbers of partnered men should be rejected, naming the location.
+     */
+    @Test
+    public void form_shouldRejectInvalidPartneredMen() {
+        for (String value : new String[]{"-3", "lots"}) {
+            RegionDataset farm = new RegionDataset();
+            farm.addLocation(new Location("Farm", "Farm"));
+            farm.setPopulation("Farm", "Male", 20, 40, 10);
+            farm.setPopulation("Farm", "Female", 20, 40, 10);
+            farm.getPopulation("Farm").setAttribute(HouseholdFormer.PARTNERED_MEN, value);
+            PersonTable residents = new PopulationSynthesizer(farm, 2).synthesizeTable();
+
+            InvalidPreconditionException e = assertThrows(
+                    InvalidPreconditionException.class,
+                    () -> HouseholdFormer.standard(farm, 3).build().form(residents),
+                    "A number of partnered men of " + value + " must be rejected.");
+            assertTrue(e.getMessage().contains("Farm"), "The error should name the location: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The same seed should produce the same households.
+     */
+    @Test
+    public void form_shouldBeReproducible() {
+        Households a = HouseholdFormer.standard(data, 4).build().form(people);
+        Households b = HouseholdFormer.standard(data, 4).build().form(people);
+        for (int p = 0; p < people.size(); p += 1) {
+            assertEquals(a.getHousehold(p), b.getHousehold(p), "The same seed must produce the same households.");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.qa.InvalidPreconditionException;
+import com.luminesim.regions.Population;
+import com.luminesim.regions.synthesis.IterativeProportionalFitter.Fit;
+import com.luminesim.regions.synthesis.IterativeProportionalFitter.Marginal;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link IterativeProportionalFitter}
+ */
+public class IterativeProportionalFitterTest {
+
+    /**
+     * A fitted table should match every marginal and keep the seed's zeros.
+     */
+    @Test
+    public void fit_shouldMatchMarginals() {
+        // Age band x sex x household type.
+        Population<String> population = new Population<>();
+        population.put("Male", 0, 18, 30);
+        population.put("Male", 18, 65, 50);
+        population.put("Female", 0, 18, 28);
+        population.put("Female", 18, 65, 52);
+        Marginal ageBySex = Marginal.of(population, 1, Arrays.asList("Male", "Female"), 0, new int[]{0, 18, 65});
+        Marginal ageByHousehold = new Marginal(new int[]{0, 2}, new double[]{58, 0, 60, 42});
+        ContingencyTable seed = ContingencyTable.filled(1, 2, 2, 2);
+        seed.set(0, 0, 0, 1);
+
+        Fit fit = new IterativeProportionalFitter().fit(seed, Arrays.asList(ageBySex, ageByHousehold));
+
+        assertTrue(fit.isConverged(), "Consistent marginals should converge.");
+        assertArrayEquals(new double[]{30, 28, 50, 52}, fit.getTable().marginal(0, 1), 1e-4, "Wrong age x sex.");
+        assertArrayEquals(new double[]{58, 0, 60, 42}, fit.getTable().marginal(0, 2), 1e-4, "Wrong age x household.");
+        assertEquals(0, fit.getTable().get(0, 0, 1), "Seed zeros must stay zero.");
+        assertEquals(1, seed.get(1, 1, 1), "The seed must not be modified.");
+    }
+
+    /**
+     * Rounding a table should keep its total.
+     */
+    @Test
+    public void integerize_shouldKeepTotal() {
+        ContingencyTable table = new ContingencyTable(3);
+        table.setCell(0, 1.4);
+        table.setCell(1, 1.4);
+        table.setCell(2, 1.2);
+        assertArrayEquals(new int[]{2, 1, 1}, table.integerize(), "Leftovers should go to the largest fractions.");
+
+        ContingencyTable large = ContingencyTable.filled(1.0 / 3, 1000);
+        assertEquals(333, Arrays.stream(large.integerize()).sum(), "Large tables should keep their rounded total.");
+        assertEquals(1, large.integerize()[0], "Ties should go to the earliest cells.");
+        assertEquals(0, large.integerize()[999], "Ties should go to the earliest cells.");
+    }
+
+    /**
+     * Fitting in parallel should give the same results as fitting one at a time.
+     */
+    @Test
+    public void fitAll_shouldMatchFit() {
+        IterativeProportionalFitter fitter = new IterativeProportionalFitter();
+        ContingencyTable seed = ContingencyTable.filled(1, 3, 2);
+        List<Marginal> marginals = Arrays.asList(
+                new Marginal(new int[]{0}, new double[]{10, 20, 30}),
+                new Marginal(new int[]{1}, new double[]{45, 15}));
+        List<Fit> fits = fitter.fitAll(Collections.nCopies(100, seed), Collections.nCopies(100, marginals));
+        double[] expected = fitter.fit(seed, marginals).getTable().marginal(0, 1);
+        fits.forEach(fit -> assertArrayEquals(expected, fit.getTable().marginal(0, 1), "Parallel fits differ."));
+    }
+
+    /**
+     * Fitters and marginals should reject invalid settings and not expose their internal arrays.
+     */
+    @Test
+    public void settings_shouldBeValidAndProtected() {
+        assertThrows(InvalidPreconditionException.class, () -> new IterativeProportionalFitter(0, 1e-6), "Fitting needs a pass.");
+        assertThrows(InvalidPreconditionException.class, () -> new IterativeProportionalFitter(10, -1), "Tolerance must be non-negative.");
+
+        Marginal marginal = new Marginal(new int[]{0}, new double[]{10, 20});
+        marginal.getTargets()[0] = 99;
+        marginal.getDimensions()[0] = 5;
+        assertArrayEquals(new double[]{10, 20}, marginal.getTargets(), "Targets must not be changeable from outside.");
+        assertArrayEquals(new int[]{0}, marginal.getDimensions(), "Dimensions must not be changeable from outside.");
+    }
+}
@@ -0,0 +1,72 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.POIGroup.POIType;
+import com.luminesim.regions.RegionDataset;
+import com.luminesim.regions.io.RegionDatasetReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link PoiAssigner}
+ */
+public class PoiAssignerTest {
+
+    private static RegionDataset data;
+    private static PersonTable people;
+    private static PoiTable pois;
+
+    @BeforeAll
+    static void loadDataset() throws Throwable {
+        data = RegionDatasetReader.read(Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+        people = new PopulationSynthesizer(data, 5).synthesizeTable();
+        pois = new PoiInstantiator(data, 5).instantiate();
+    }
+
+    /**
+     * No POI should go over capacity, everyone should be of the right age, and POIs should fill while people remain.
+     */
+    @Test
+    public void assign_shouldRespectCapacitiesAndAges() {
+        PoiAssignment assignment = PoiAssigner.standard(data, 1).build().assign(people, pois);
+        int[] attendees = new int[pois.size()];
+        int[] employees = new int[pois.size()];
+        int teenagers = 0;
+        for (int person = 0; person < people.size(); person += 1) {
+            double age = people.getAge(person);
+            teenagers += age >= 14 && age < 18 ? 1 : 0;
+            if (assignment.getAttended(person) != PoiAssignment.NONE) {
+                attendees[assignment.getAttended(person)] += 1;
+                assertNotEquals(POIType.Workplace, pois.getType(assignment.getAttended(person)), "Nobody attends workplaces.");
+                assertEquals(PoiAssignment.NONE, assignment.getEmployer(person), "Attendees are not employed.");
+            }
+            if (assignment.getEmployer(person) != PoiAssignment.NONE) {
+                employees[assignment.getEmployer(person)] += 1;
+                assertTrue(age >= 18 && age < 65, "Employees must be of working age.");
+            }
+        }
+        for (int poi = 0; poi < pois.size(); poi += 1) {
+            assertTrue(attendees[poi] <= pois.getAttendees(poi), "Too many attendees.");
+            assertTrue(employees[poi] <= pois.getEmployees(poi), "Too many employees.");
+        }
+        int school = pois.getFirst(data.getIndex("Unity-UCHS"));
+        assertEquals(Math.min(teenagers, pois.getAttendees(school)), attendees[school], "The school should fill while teenagers remain.");
+        assertEquals(pois.getEmployees(school), employees[school], "The school should be fully staffed.");
+    }
+
+    /**
+     * The same seed should produce the same assignment.
+     */
+    @Test
+    public void assign_shouldBeReproducible() {
+        PoiAssignment a = PoiAssigner.standard(data, 9).build().assign(people, pois);
+        PoiAssignment b = PoiAssigner.standard(data, 9).build().assign(people, pois);
+        for (int person = 0; person < people.size(); person += 1) {
+            assertEquals(a.getAttended(person), b.getAttended(person), "The same seed must produce the same assignment.");
+            assertEquals(a.getEmployer(person), b.getEmployer(person), "The same seed must produce the same assignment.");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.Location;
+import com.luminesim.regions.POIGroup;
+import com.luminesim.regions.POIGroup.POIType;
+import com.luminesim.regions.RegionDataset;
+import com.luminesim.regions.io.RegionDatasetReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link PoiInstantiator}
+ */
+public class PoiInstantiatorTest {
+
+    private static RegionDataset data;
+
+    @BeforeAll
+    static void loadDataset() throws Throwable {
+        data = RegionDatasetReader.read(Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+    }
+
+    /**
+     * Every group should become its number of POIs, each with capacities inside the group's ranges.
+     */
+    @Test
+    public void instantiate_shouldExpandGroupsWithinRanges() {
+        PoiTable table = new PoiInstantiator(data, 3).instantiate();
+        assertEquals(602, table.size(), "Wrong number of POIs.");
+
+        int unity = data.getIndex("CensusRegion-Unity");
+        assertEquals(600, table.getEnd(unity) - table.getFirst(unity), "Wrong number of POIs in Unity.");
+        for (int poi = table.getFirst(unity); poi < table.getEnd(unity); poi += 1) {
+            assertEquals(unity, table.getLocation(poi), "POI in the wrong location.");
+            assertEquals(POIType.Workplace, table.getType(poi), "Wrong POI type.");
+            assertTrue(table.getEmployees(poi) >= 0 && table.getEmployees(poi) <= 10, "Employees out of range.");
+        }
+
+        int school = table.getFirst(data.getIndex("Unity-UCHS"));
+        assertEquals(POIType.SecondarySchool, table.getType(school), "Wrong POI type.");
+        assertEquals(20, table.getEmployees(school), "Wrong number of employees.");
+        assertTrue(table.getAttendees(school) >= 100 && table.getAttendees(school) <= 200, "Attendees out of range.");
+        assertEquals(49, table.getTotalAttendees(POIType.AssistedLiving), "Wrong number of residents.");
+    }
+
+    /**
+     * Capacities should be drawn from the full range, even when it reaches the largest int.
+     */
+    @Test
+    public void instantiate_shouldHandleTheLargestCapacities() {
+        RegionDataset big = new RegionDataset();
+        big.addLocation(new Location("Big", "Big"));
+        big.addPOIGroup(POIGroup
+                .builder()
+                .locationId("Big")
+                .groupType(POIType.Workplace)
+                .minEmployees(Integer.MAX_VALUE - 1)
+                .maxEmployees(Integer.MAX_VALUE)
+                .minAttendees(0)
+                .maxAttendees(Integer.MAX_VALUE)
+                .number(50)
+                .build());
+        PoiTable table = new PoiInstantiator(big, 1).instantiate();
+        assertEquals(50, table.size(), "Wrong number of POIs.");
+        for (int poi = 0; poi < table.size(); poi += 1) {
+            assertTrue(table.getEmployees(poi) >= Integer.MAX_VALUE - 1, "Employees out of range.");
+            assertTrue(table.getAttendees(poi) >= 0, "Attendees out of range.");
+        }
+    }
+
+    /**
+     * The same seed should produce the same POIs however the work is spread over threads, and a different seed
+     * should produce different POIs.
+     */
+    @Test
+    public void instantiate_shouldBeReproducible() throws Exception {
+        // Parallel streams run in the pool of the task that starts them, so this runs on a single thread.
+        ForkJoinPool single = new ForkJoinPool(1);
+        PoiTable a;
+        try {
+            a = single.submit(() -> new PoiInstantiator(data, 11).instantiate()).get();
+        }
+        finally {
+            single.shutdown();
+        }
+        PoiTable b = new PoiInstantiator(data, 11).instantiate();
+        PoiTable c = new PoiInstantiator(data, 12).instantiate();
+        assertEquals(a.size(), b.size(), "The same seed must produce the same POIs.");
+        boolean differs = false;
+        for (int poi = 0; poi < a.size(); poi += 1) {
+            assertEquals(a.getEmployees(poi), b.getEmployees(poi), "The same seed must produce the same POIs on one thread or many.");
+            assertEquals(a.getAttendees(poi), b.getAttendees(poi), "The same seed must produce the same POIs on one thread or many.");
+            differs |= a.getEmployees(poi) != c.getEmployees(poi) || a.getAttendees(poi) != c.getAttendees(poi);
+        }
+        assertTrue(differs, "A different seed should produce different capacities.");
+    }
+}
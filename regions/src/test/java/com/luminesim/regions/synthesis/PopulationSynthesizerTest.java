@@ -0,0 +1,82 @@
+package com.luminesim.regions.synthesis;
+
+import com.luminesim.regions.RegionDataset;
+import com.luminesim.regions.io.RegionDatasetReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link PopulationSynthesizer}
+ */
+public class PopulationSynthesizerTest {
+
+    private static RegionDataset data;
+
+    @BeforeAll
+    static void loadDataset() throws Throwable {
+        data = RegionDatasetReader.read(Paths.get(ClassLoader.getSystemResource("UnitySKData").toURI()));
+    }
+
+    /**
+     * Every location should receive exactly its exclusive population.
+     */
+    @Test
+    public void synthesize_shouldProduceExclusivePopulations() {
+        Map<String, List<Double>> ages = synthesize(1);
+        data.getLocations().forEach(location -> assertEquals(
+                data.hasPopulation(location) ? data.getExclusivePopulation(location).size() : 0,
+                ages.getOrDefault(location.getId(), Collections.emptyList()).size(),
+                "Wrong number of people synthesized for " + location));
+        assertEquals(
+                data.getExclusivePopulationSize("CensusRegion-Unity", 40, 80),
+                ages.get("CensusRegion-Unity").stream().filter(age -> age >= 40 && age < 80).count(),
+                "Wrong number of people synthesized in an age range.");
+    }
+
+    /**
+     * The same seed should produce the same people, regardless of thread scheduling.
+     */
+    @Test
+    public void synthesize_shouldBeReproducible() {
+        assertEquals(synthesize(7), synthesize(7), "The same seed must produce the same people.");
+    }
+
+    /**
+     * The table should hold the same people as the sink, grouped by location.
+     */
+    @Test
+    public void synthesizeTable_shouldMatchSink() {
+        PersonTable table = new PopulationSynthesizer(data, 7).synthesizeTable();
+        Map<String, List<Double>> ages = new HashMap<>();
+        for (int person = 0; person < table.size(); person += 1) {
+            ages.computeIfAbsent(data.getLocation(table.getLocation(person)).getId(), x -> new ArrayList<>()).add(table.getAge(person));
+        }
+        ages.values().forEach(Collections::sort);
+        assertEquals(synthesize(7), ages, "The table must hold the same people as the sink.");
+        int unity = data.getIndex("CensusRegion-Unity");
+        assertEquals(ages.get("CensusRegion-Unity").size(), table.getEnd(unity) - table.getFirst(unity), "Location rows must be contiguous.");
+    }
+
+    /**
+     * @return
+     *  The (sorted) ages of the people synthesized in each location.
+     */
+    private Map<String, List<Double>> synthesize(long seed) {
+        Map<String, List<Double>> ages = new ConcurrentHashMap<>();
+        new PopulationSynthesizer(data, seed).synthesize((location, segment, age) ->
+                ages.computeIfAbsent(location.getId(), x -> Collections.synchronizedList(new ArrayList<>())).add(age));
+        Map<String, List<Double>> sorted = new HashMap<>();
+        ages.forEach((id, list) -> {
+            List<Double> copy = new ArrayList<>(list);
+            Collections.sort(copy);
+            sorted.put(id, copy);
+        });
+        return sorted;
+    }
+}